@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2016, 2017, 2018, 2019 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.installer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import net.fabricmc.installer.client.ClientInstaller;
+import net.fabricmc.installer.server.MinecraftServerDownloader;
+import net.fabricmc.installer.server.ServerInstaller;
+import net.fabricmc.installer.util.ArtifactCache;
+import net.fabricmc.installer.util.HttpTransport;
+import net.fabricmc.installer.util.InstallBundle;
+import net.fabricmc.installer.util.InstallerProgress;
+import net.fabricmc.installer.util.LaunchJarCache;
+import net.fabricmc.installer.util.MetadataCache;
+import net.fabricmc.installer.util.Utils;
+
+/**
+ * Creates an {@link InstallBundle} by running a client and server install into a throwaway directory while recording
+ * everything they download, the vanilla server jar included.
+ */
+public class BundleCreator {
+	public static void create(Path output, String gameVersion, LoaderVersion loaderVersion, InstallerProgress progress) throws IOException {
+		HttpTransport previousTransport = HttpTransport.get();
+		boolean artifactCache = ArtifactCache.enabled;
+		boolean metadataCache = MetadataCache.enabled;
+		boolean launchJarCache = LaunchJarCache.enabled;
+		Path workDir = Files.createTempDirectory("fabric-installer-bundle-install");
+
+		try (InstallBundle.Recorder recorder = new InstallBundle.Recorder(previousTransport)) {
+			HttpTransport.set(recorder);
+			// Anything served from a cache would be missing from the bundle
+			ArtifactCache.enabled = false;
+			MetadataCache.enabled = false;
+			LaunchJarCache.enabled = false;
+
+			Path clientDir = Files.createDirectories(workDir.resolve("client"));
+			ClientInstaller.install(clientDir, gameVersion, loaderVersion, progress);
+
+			Path serverDir = workDir.resolve("server");
+			ServerInstaller.install(serverDir, loaderVersion, gameVersion, progress);
+
+			progress.updateProgress(Utils.BUNDLE.getString("progress.download.minecraft"));
+			new MinecraftServerDownloader(gameVersion).downloadMinecraftServer(serverDir.resolve("server.jar"), progress);
+
+			recorder.write(output, gameVersion, loaderVersion.name);
+		} finally {
+			HttpTransport.set(previousTransport);
+			ArtifactCache.enabled = artifactCache;
+			MetadataCache.enabled = metadataCache;
+			LaunchJarCache.enabled = launchJarCache;
+			Utils.deleteDirectory(workDir);
+		}
+
+		progress.updateProgress(Utils.BUNDLE.getString("progress.done"));
+	}
+}
@@ -24,6 +24,10 @@ import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.text.MessageFormat;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 
 import javax.swing.BoxLayout;
@@ -36,10 +40,12 @@ import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JTextField;
+import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
 import javax.swing.filechooser.FileNameExtensionFilter;
 
 import net.fabricmc.installer.util.ArgumentParser;
+import net.fabricmc.installer.util.DownloadProgress;
 import net.fabricmc.installer.util.InstallerProgress;
 import net.fabricmc.installer.util.MetaHandler;
 import net.fabricmc.installer.util.Utils;
@@ -57,6 +63,9 @@ public abstract class Handler implements InstallerProgress {
 
 	private JPanel pane;
 	private JCheckBox snapshotCheckBox;
+	private final AtomicReference<DownloadProgress> pendingDownloadProgress = new AtomicReference<>();
+	// The loader versions shown are from the last run until the fresh list arrives
+	private boolean showingSnapshot;
 
 	public abstract String name();
 
@@ -88,14 +97,17 @@ public abstract class Handler implements InstallerProgress {
 				}
 			});
 			gameVersionComboBox.addActionListener(e -> {
-				this.updateLoaderVersions((String) gameVersionComboBox.getSelectedItem());
+				String gameVersion = (String) gameVersionComboBox.getSelectedItem();
+
+				// Nothing is selected while the list is being replaced
+				if (gameVersion != null) {
+					this.updateLoaderVersions(gameVersion);
+				}
 			});
 		});
 
-		Main.GAME_VERSION_META.onComplete(versions -> {
-			updateGameVersions();
-			updateLoaderVersions();
-		});
+		// Selecting the game version loads its loader versions
+		Main.GAME_VERSION_META.onComplete(versions -> updateGameVersions());
 
 		addRow(pane, jPanel -> {
 			jPanel.add(new JLabel(Utils.BUNDLE.getString("prompt.loader.version")));
@@ -148,25 +160,33 @@ public abstract class Handler implements InstallerProgress {
 			}
 
 			loaderVersionComboBox.setSelectedIndex(stableIndex);
-			statusLabel.setText(Utils.BUNDLE.getString("prompt.ready.install"));
+
+			if (MetaHandler.isSnapshot(versions)) {
+				showingSnapshot = true;
+				statusLabel.setText(Utils.BUNDLE.getString("prompt.ready.install.snapshot"));
+			} else {
+				statusLabel.setText(Utils.BUNDLE.getString(showingSnapshot ? "prompt.ready.install.refreshed" : "prompt.ready.install"));
+				showingSnapshot = false;
+			}
 		});
 
 		return pane;
 	}
 
-	private void updateLoaderVersions() {
-		this.updateLoaderVersions("1.8.9");
-	}
-
+	// Doesn't block the event dispatch thread, selecting another version cancels a load that is still running
 	private void updateLoaderVersions(String mcVersion) {
-		try {
-			Main.LOADER_META.load(mcVersion);
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
+		Main.LOADER_META.loadAsync(mcVersion).exceptionally(throwable -> {
+			if (!(throwable instanceof CancellationException)) {
+				SwingUtilities.invokeLater(() -> error(throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable));
+			}
+
+			return null;
+		});
 	}
 
 	private void updateGameVersions() {
+		// A refreshed list keeps the user's choice
+		Object selected = gameVersionComboBox.getSelectedItem();
 		gameVersionComboBox.removeAllItems();
 
 		for (MetaHandler.GameVersion version : Main.GAME_VERSION_META.getVersions()) {
@@ -178,6 +198,10 @@ public abstract class Handler implements InstallerProgress {
 		}
 
 		gameVersionComboBox.setSelectedIndex(2); // Select 1.8.9 by default
+
+		if (selected != null) {
+			gameVersionComboBox.setSelectedItem(selected);
+		}
 	}
 
 	protected LoaderVersion queryLoaderVersion() {
@@ -213,10 +237,36 @@ public abstract class Handler implements InstallerProgress {
 
 	@Override
 	public void updateProgress(String text) {
+		// Drop a pending download update, it would overwrite this
+		pendingDownloadProgress.set(null);
 		statusLabel.setText(text);
 		statusLabel.setForeground(UIManager.getColor("Label.foreground"));
 	}
 
+	@Override
+	public void updateDownloadProgress(DownloadProgress progress) {
+		// Several downloads may report at once, only the latest update is shown
+		if (pendingDownloadProgress.getAndSet(progress) != null) {
+			return;
+		}
+
+		SwingUtilities.invokeLater(() -> {
+			DownloadProgress latest = pendingDownloadProgress.getAndSet(null);
+
+			if (latest != null) {
+				statusLabel.setText(formatDownloadProgress(latest));
+			}
+		});
+	}
+
+	private static String formatDownloadProgress(DownloadProgress progress) {
+		if (progress.bytesTotal < 0) {
+			return new MessageFormat(Utils.BUNDLE.getString("progress.download.file.unknown")).format(new Object[]{progress.artifact, progress.getMegabytesDone(), progress.getMegabytesPerSecond()});
+		}
+
+		return new MessageFormat(Utils.BUNDLE.getString("progress.download.file")).format(new Object[]{progress.artifact, progress.getMegabytesDone(), progress.getMegabytesTotal(), progress.getMegabytesPerSecond()});
+	}
+
 	protected String buildEditorPaneStyle() {
 		JLabel label = new JLabel();
 		Font font = label.getFont();
@@ -259,8 +309,12 @@ public abstract class Handler implements InstallerProgress {
 		parent.add(panel);
 	}
 
-	protected String getGameVersion(ArgumentParser args) {
+	protected static String getGameVersion(ArgumentParser args) {
 		return args.getOrDefault("mcversion", () -> {
+			if (Main.INSTALL_BUNDLE != null) {
+				return Main.INSTALL_BUNDLE.getGameVersion();
+			}
+
 			System.out.println("Using latest game version");
 
 			try {
@@ -273,8 +327,12 @@ public abstract class Handler implements InstallerProgress {
 		});
 	}
 
-	protected String getLoaderVersion(ArgumentParser args, String gameVersion) {
+	protected static String getLoaderVersion(ArgumentParser args, String gameVersion) {
 		return args.getOrDefault("loader", () -> {
+			if (Main.INSTALL_BUNDLE != null) {
+				return Main.INSTALL_BUNDLE.getLoaderVersion();
+			}
+
 			System.out.println("Using latest loader version");
 
 			try {
@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2016, 2017, 2018, 2019 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.installer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+import mjson.Json;
+
+import net.fabricmc.installer.server.MinecraftServerDownloader;
+import net.fabricmc.installer.server.ServerInstaller;
+import net.fabricmc.installer.util.ArtifactCache;
+import net.fabricmc.installer.util.Library;
+import net.fabricmc.installer.util.MetaHandler;
+import net.fabricmc.installer.util.ParallelDownloader;
+import net.fabricmc.installer.util.VersionMeta;
+
+/**
+ * Resolves the server install plans of many game and loader versions at once without installing anything.
+ *
+ * <p>A selector is {@code <game version>:<loader version>}, either side may be {@code latest}. Selectors are resolved
+ * concurrently, the version lists and launcher manifest are loaded once and shared, selectors naming the same versions
+ * share a plan.
+ */
+public class InstallPlanner {
+	public static final String LATEST = "latest";
+
+	private final MetaHandler gameVersionMeta;
+	private final MetaHandler loaderMeta;
+	// Download the repository checksum of libraries that aren't in the artifact cache
+	private final boolean remoteChecksums;
+
+	public InstallPlanner(MetaHandler gameVersionMeta, MetaHandler loaderMeta, boolean remoteChecksums) {
+		this.gameVersionMeta = gameVersionMeta;
+		this.loaderMeta = loaderMeta;
+		this.remoteChecksums = remoteChecksums;
+	}
+
+	/**
+	 * Returns one plan per selector in the same order, a selector that fails to resolve gets an error instead.
+	 */
+	public Json resolve(List<String> selectors) throws IOException {
+		// Completed on the meta handler threads, so shared by concurrent callbacks
+		Map<String, CompletableFuture<Json>> plans = new ConcurrentHashMap<>();
+		List<CompletableFuture<Json>> results = new ArrayList<>();
+
+		try (ParallelDownloader downloader = new ParallelDownloader()) {
+			// Resolving latest only needs the version lists, those are loaded by the meta handlers
+			List<CompletableFuture<String[]>> versions = new ArrayList<>();
+
+			for (String selector : selectors) {
+				versions.add(resolveVersions(selector));
+			}
+
+			for (int i = 0; i < selectors.size(); i++) {
+				String selector = selectors.get(i);
+				CompletableFuture<Json> plan = versions.get(i).thenCompose(v -> plans.computeIfAbsent(v[0] + ":" + v[1], key -> downloader.submit(() -> plan(v[0], v[1]))));
+				results.add(plan.handle((json, throwable) -> throwable == null ? json.dup().set("selector", selector) : error(selector, throwable)));
+			}
+
+			return Json.array(ParallelDownloader.awaitAll(results).toArray());
+		}
+	}
+
+	public static boolean hasErrors(Json plans) {
+		return plans.asJsonList().stream().anyMatch(plan -> plan.has("error"));
+	}
+
+	/**
+	 * Reads selectors separated by commas or new lines, lines starting with {@code #} are ignored.
+	 */
+	public static List<String> parseSelectors(String str) {
+		List<String> selectors = new ArrayList<>();
+
+		for (String selector : str.split("[,\\n]")) {
+			selector = selector.trim();
+
+			if (!selector.isEmpty() && !selector.startsWith("#")) {
+				selectors.add(selector);
+			}
+		}
+
+		return selectors;
+	}
+
+	public static List<String> readSelectors(Path file) throws IOException {
+		return parseSelectors(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+	}
+
+	private CompletableFuture<String[]> resolveVersions(String selector) {
+		String[] parts = selector.split(":", 2);
+
+		if (parts.length != 2 || parts[0].isEmpty() || parts[1].isEmpty()) {
+			CompletableFuture<String[]> future = new CompletableFuture<>();
+			future.completeExceptionally(new IllegalArgumentException("Expected <game version>:<loader version>, got " + selector));
+			return future;
+		}
+
+		CompletableFuture<String> gameVersion = parts[0].equals(LATEST)
+				? gameVersionMeta.fetchAsync().thenApply(list -> MetaHandler.getLatestVersion(list, false).getVersion())
+				: CompletableFuture.completedFuture(parts[0]);
+
+		return gameVersion.thenCompose(game -> {
+			if (!parts[1].equals(LATEST)) {
+				return CompletableFuture.completedFuture(new String[]{game, parts[1]});
+			}
+
+			return loaderMeta.fetchAsync(game).thenApply(list -> new String[]{game, MetaHandler.getLatestVersion(list, false).getVersion()});
+		});
+	}
+
+	private Json plan(String gameVersion, String loaderVersion) throws IOException {
+		ServerInstaller.InstallPlan plan = ServerInstaller.resolve(new LoaderVersion(loaderVersion), gameVersion);
+		VersionMeta.Download server = new MinecraftServerDownloader(gameVersion).getServerDownload();
+		Json libraries = Json.array();
+
+		for (Library library : plan.libraries) {
+			libraries.add(library(library));
+		}
+
+		return Json.object()
+				.set("gameVersion", gameVersion)
+				.set("loaderVersion", loaderVersion)
+				.set("mainClass", plan.launchMainClass)
+				.set("jarMainClass", plan.getJarMainClass())
+				.set("shadeLibraries", plan.shadeLibraries)
+				.set("launchJar", ServerInstaller.DEFAULT_LAUNCH_JAR_NAME)
+				.set("serverJar", Json.object()
+						.set("path", "server.jar")
+						.set("url", server.url)
+						.set("sha1", server.sha1)
+						.set("size", server.size))
+				.set("libraries", libraries);
+	}
+
+	private Json library(Library library) throws IOException {
+		Json json = Json.object()
+				.set("name", library.name)
+				.set("path", "libraries/" + Paths.get(library.getFileName()).toString().replace('\\', '/'));
+
+		if (library.inputPath != null) {
+			return json.set("file", library.inputPath.toString());
+		}
+
+		json.set("url", library.getURL());
+		Path cached = ArtifactCache.getCached(library);
+
+		if (cached != null) {
+			json.set("sha1", cached.getFileName().toString());
+			json.set("size", Files.size(cached));
+		} else if (remoteChecksums) {
+			String sha1 = ArtifactCache.readRemoteSha1(library);
+			if (sha1 != null) json.set("sha1", sha1);
+		}
+
+		return json;
+	}
+
+	private static Json error(String selector, Throwable throwable) {
+		while ((throwable instanceof CompletionException || throwable instanceof ExecutionException) && throwable.getCause() != null) {
+			throwable = throwable.getCause();
+		}
+
+		if (throwable instanceof UncheckedIOException) {
+			throwable = throwable.getCause();
+		}
+
+		return Json.object()
+				.set("selector", selector)
+				.set("error", String.valueOf(throwable));
+	}
+}
@@ -20,17 +20,21 @@ import java.awt.Toolkit;
 import java.io.File;
 import java.io.IOException;
 import java.util.Locale;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 import javax.swing.JFileChooser;
 import javax.swing.JFrame;
 import javax.swing.JTabbedPane;
+import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
 import javax.swing.UnsupportedLookAndFeelException;
 import javax.swing.WindowConstants;
 import javax.xml.stream.XMLStreamException;
 
+import net.fabricmc.installer.util.CrashDialog;
 import net.fabricmc.installer.util.Utils;
 
 public class InstallerGui extends JFrame {
@@ -45,8 +49,22 @@ public class InstallerGui extends JFrame {
 		setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
 		setIconImage(Toolkit.getDefaultToolkit().getImage(ClassLoader.getSystemClassLoader().getResource("icon.png")));
 
-		Main.GAME_VERSION_META.load();
-		Main.LOADER_META.load("1.8.9");
+		// Loaded in the background, the handlers update their components on the event dispatch thread
+		Main.GAME_VERSION_META.setCallbackExecutor(SwingUtilities::invokeLater);
+		Main.LOADER_META.setCallbackExecutor(SwingUtilities::invokeLater);
+		Main.GAME_VERSION_META.loadAsync().exceptionally(InstallerGui::loadFailed);
+		Main.LOADER_META.loadAsync("1.8.9").exceptionally(InstallerGui::loadFailed);
+	}
+
+	private static <T> T loadFailed(Throwable throwable) {
+		// Superseded by a later request
+		if (!(throwable instanceof CancellationException)) {
+			Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+			cause.printStackTrace();
+			SwingUtilities.invokeLater(() -> new CrashDialog(cause));
+		}
+
+		return null;
 	}
 
 	public static void selectInstallLocation(Supplier<String> initalDir, Consumer<String> selectedDir) {
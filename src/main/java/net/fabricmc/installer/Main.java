@@ -18,19 +18,35 @@ package net.fabricmc.installer;
 
 import java.awt.GraphicsEnvironment;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 
+import mjson.Json;
+
 import net.fabricmc.installer.client.ClientHandler;
 import net.fabricmc.installer.server.ServerHandler;
 import net.fabricmc.installer.util.ArgumentParser;
+import net.fabricmc.installer.util.ArtifactCache;
 import net.fabricmc.installer.util.CrashDialog;
+import net.fabricmc.installer.util.HttpTransport;
+import net.fabricmc.installer.util.InstallBundle;
+import net.fabricmc.installer.util.InstallerProgress;
+import net.fabricmc.installer.util.LaunchJarCache;
 import net.fabricmc.installer.util.MetaHandler;
+import net.fabricmc.installer.util.MetadataCache;
+import net.fabricmc.installer.util.Mirrors;
+import net.fabricmc.installer.util.ParallelDownloader;
 import net.fabricmc.installer.util.Reference;
+import net.fabricmc.installer.util.UrlConnectionTransport;
+import net.fabricmc.installer.util.Utils;
+import net.fabricmc.installer.util.VerificationIndex;
 
 public class Main {
 	public static MetaHandler GAME_VERSION_META;
 	public static MetaHandler LOADER_META;
+	public static InstallBundle INSTALL_BUNDLE;
 
 	public static final List<Handler> HANDLERS = new ArrayList<>();
 
@@ -45,6 +61,41 @@ public class Main {
 
 		//Can be used if you wish to re-host or provide custom versions. Ensure you include the trailing /
 		argumentParser.ifPresent("metaurl", s -> Reference.metaServerUrl = s);
+		argumentParser.ifPresent("downloadThreads", s -> ParallelDownloader.defaultThreads = Integer.parseInt(s));
+		argumentParser.ifPresent("cacheDir", s -> Utils.cacheDir = Paths.get(s).toAbsolutePath().normalize());
+		argumentParser.ifPresent("cacheSize", s -> ArtifactCache.maxSize = Long.parseLong(s) * 1024 * 1024);
+
+		argumentParser.ifPresent("metaTtl", s -> MetadataCache.ttl = Long.parseLong(s));
+		argumentParser.ifPresent("connectTimeout", s -> UrlConnectionTransport.connectTimeout = Integer.parseInt(s) * 1000);
+		argumentParser.ifPresent("readTimeout", s -> UrlConnectionTransport.readTimeout = Integer.parseInt(s) * 1000);
+
+		if (argumentParser.has("noCache")) {
+			ArtifactCache.enabled = false;
+			MetadataCache.enabled = false;
+			LaunchJarCache.enabled = false;
+		}
+
+		if (argumentParser.has("offline")) {
+			MetadataCache.offline = true;
+		}
+
+		// Hash every file again instead of trusting the verification index
+		if (argumentParser.has("paranoid")) {
+			VerificationIndex.paranoid = true;
+		}
+
+		// <repository>=<mirror>[,<mirror>...][;<repository>=...]
+		argumentParser.ifPresent("mirrors", Mirrors::parse);
+
+		if (argumentParser.has("raceMirrors")) {
+			Mirrors.race = true;
+		}
+
+		if (argumentParser.has("bundle")) {
+			// Everything is served from the bundle, nothing is downloaded
+			INSTALL_BUNDLE = InstallBundle.open(Paths.get(argumentParser.get("bundle")));
+			HttpTransport.set(INSTALL_BUNDLE);
+		}
 
 		GAME_VERSION_META = new MetaHandler(Reference.getMetaServerEndpoint("v2/versions/game"));
 		LOADER_META = new MetaHandler(Reference.getMetaServerEndpoint("v2/versions/loader"));
@@ -64,11 +115,43 @@ public class Main {
 		} else if (command.equals("help")) {
 			System.out.println("help - Opens this menu");
 			HANDLERS.forEach(handler -> System.out.printf("%s %s\n", handler.name().toLowerCase(), handler.cliHelp()));
+			System.out.println("bundle -output <bundle file> -mcversion <minecraft version, default latest> -loader <loader version, default latest> - Downloads everything needed to install with -bundle <bundle file> without network access");
+			System.out.println("resolve -versions <minecraft version>:<loader version>,... -versionsFile <file> -output <file> -checksums - Prints the server install plans as json, latest selects the latest version");
+			System.out.println("\nGlobal options: -metaurl <meta server url> -downloadThreads <parallel downloads, default 6> -cacheDir <dir> -cacheSize <MiB, default 1024> -metaTtl <seconds, default 600> -connectTimeout <seconds, default 15> -readTimeout <seconds, default 30> -mirrors <repo>=<mirror>,...;... -raceMirrors -noCache -offline -paranoid");
 
 			GAME_VERSION_META.load();
 			LOADER_META.load("1.8.9");
 
 			System.out.printf("\nLatest Version: %s\nLatest Loader: %s\n", Main.GAME_VERSION_META.getLatestVersion(false), Main.LOADER_META.getLatestVersion(false));
+		} else if (command.equals("bundle")) {
+			String gameVersion = Handler.getGameVersion(argumentParser);
+			String loaderVersion = Handler.getLoaderVersion(argumentParser, gameVersion);
+			Path output = Paths.get(argumentParser.getOrDefault("output", () -> String.format("fabric-installer-bundle-%s-%s.zip", gameVersion, loaderVersion)));
+
+			BundleCreator.create(output.toAbsolutePath(), gameVersion, new LoaderVersion(loaderVersion), InstallerProgress.CONSOLE);
+		} else if (command.equals("resolve")) {
+			List<String> selectors = new ArrayList<>();
+			argumentParser.ifPresent("versions", s -> selectors.addAll(InstallPlanner.parseSelectors(s)));
+
+			if (argumentParser.has("versionsFile")) {
+				selectors.addAll(InstallPlanner.readSelectors(Paths.get(argumentParser.get("versionsFile"))));
+			}
+
+			if (selectors.isEmpty()) {
+				selectors.add(InstallPlanner.LATEST + ":" + InstallPlanner.LATEST);
+			}
+
+			Json plans = new InstallPlanner(GAME_VERSION_META, LOADER_META, argumentParser.has("checksums")).resolve(selectors);
+
+			if (argumentParser.has("output")) {
+				Utils.writeToFile(Paths.get(argumentParser.get("output")), plans.toString());
+			} else {
+				System.out.println(plans);
+			}
+
+			if (InstallPlanner.hasErrors(plans)) {
+				throw new RuntimeException("Failed to resolve some of the versions, see the errors in the plans");
+			}
 		} else {
 			for (Handler handler : HANDLERS) {
 				if (command.equalsIgnoreCase(handler.name())) {
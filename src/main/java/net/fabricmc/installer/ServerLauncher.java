@@ -17,38 +17,56 @@
 package net.fabricmc.installer;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
+import java.lang.management.ManagementFactory;
+import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.text.MessageFormat;
+import java.util.Arrays;
 import java.util.Objects;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
 import java.util.zip.ZipError;
 
+import net.fabricmc.installer.server.ClassDataSharing;
+import net.fabricmc.installer.server.LaunchJarCompression;
 import net.fabricmc.installer.server.MinecraftServerDownloader;
 import net.fabricmc.installer.server.ServerInstaller;
 import net.fabricmc.installer.util.InstallerProgress;
+import net.fabricmc.installer.util.ParallelDownloader;
 import net.fabricmc.installer.util.Utils;
 
 public final class ServerLauncher {
 	private static final String INSTALL_CONFIG_NAME = "install.properties";
 	private static final Path DATA_DIR = Paths.get(".fabric", "server");
+	private static final String LAUNCH_STATE_NAME = "launch-state.properties";
+	private static final String LAUNCH_STATE_FORMAT = "1";
 
 	public static void main(String[] args) throws Throwable {
-		LaunchData launchData;
+		// Restarts skip the validation done by initialise if none of the files involved have changed since. Only jdk
+		// classes are used until the hand off, nothing of the installer is initialised
+		LaunchData launchData = readLaunchState();
 
-		try {
-			launchData = initialise();
-		} catch (IOException e) {
-			throw new RuntimeException("Failed to setup fabric server", e);
+		if (launchData == null) {
+			try {
+				launchData = initialise();
+			} catch (IOException e) {
+				throw new RuntimeException("Failed to setup fabric server", e);
+			}
 		}
 
 		Objects.requireNonNull(launchData, "launchData is null, cannot proceed");
@@ -90,29 +108,184 @@ public final class ServerLauncher {
 		// Includes the mc version as this jar contains intermediary
 		Path serverLaunchJar = dataDir.resolve(String.format("fabric-loader-server-%s-minecraft-%s.jar", loaderVersion.name, gameVersion));
 
+		LaunchData launchData = null;
+
 		if (Files.exists(serverJar) && Files.exists(serverLaunchJar)) {
 			try {
 				String mainClass = readMainClass(serverLaunchJar);
 				// All seems good, no need to reinstall
-				return new LaunchData(serverJar, serverLaunchJar, mainClass);
+				launchData = new LaunchData(serverJar, serverLaunchJar, mainClass);
 			} catch (IOException | ZipError e) {
 				// Wont throw here, will try to reinstall
 				System.err.println("Failed to read main class from server launch jar: " + e.getMessage());
 			}
 		}
 
+		if (launchData == null) {
+			launchData = install(properties, baseDir, dataDir, loaderVersion, gameVersion, serverJar, serverLaunchJar);
+		}
+
+		boolean complete = true;
+
+		// The training start runs this launcher as well
+		if (Boolean.parseBoolean(properties.getProperty("class-data-sharing")) && !ClassDataSharing.isTraining()) {
+			// Tried again next start if it failed, the eula may not have been accepted yet
+			complete = trainClassDataSharing(baseDir, dataDir.resolve(ClassDataSharing.ARCHIVE_NAME), launchData);
+		}
+
+		if (complete && customLoaderPath == null) {
+			writeLaunchState(launchData);
+		}
+
+		return launchData;
+	}
+
+	/**
+	 * Installs the server into the data directory, downloading the server jar at the same time.
+	 */
+	public static LaunchData install(Properties properties, Path baseDir, Path dataDir, LoaderVersion loaderVersion, String gameVersion, Path serverJar, Path serverLaunchJar) throws IOException {
+		// Stored entries load faster, at the cost of a larger jar
+		LaunchJarCompression compression = LaunchJarCompression.parse(properties.getProperty("launch-jar-compression", "default"));
+
 		Files.createDirectories(dataDir);
-		ServerInstaller.install(baseDir, loaderVersion, gameVersion, InstallerProgress.CONSOLE, serverLaunchJar);
 
-		InstallerProgress.CONSOLE.updateProgress(Utils.BUNDLE.getString("progress.download.minecraft"));
-		MinecraftServerDownloader downloader = new MinecraftServerDownloader(gameVersion);
-		downloader.downloadMinecraftServer(serverJar);
+		// The server jar doesn't depend on anything the install does, so it is downloaded at the same time
+		try (ParallelDownloader executor = new ParallelDownloader(2)) {
+			CompletableFuture<Void> serverJarDownload = executor.submit(() -> {
+				InstallerProgress.CONSOLE.updateProgress(Utils.BUNDLE.getString("progress.download.minecraft"));
+				MinecraftServerDownloader downloader = new MinecraftServerDownloader(gameVersion);
+				downloader.downloadMinecraftServer(serverJar, InstallerProgress.CONSOLE);
+				return null;
+			});
+			CompletableFuture<Void> install = executor.submit(() -> {
+				ServerInstaller.install(baseDir, loaderVersion, gameVersion, InstallerProgress.CONSOLE, serverLaunchJar, compression);
+				return null;
+			});
+
+			// Closing the executor interrupts whichever side is still running, a partial download is resumed next time
+			ParallelDownloader.awaitAllFailFast(Arrays.asList(install, serverJarDownload));
+		}
 
 		String mainClass = readMainClass(serverLaunchJar);
 
 		return new LaunchData(serverJar, serverLaunchJar, mainClass);
 	}
 
+	// Only later starts benefit, they have to be run with -XX:SharedArchiveFile pointing at the archive
+	private static boolean trainClassDataSharing(Path baseDir, Path archive, LaunchData launchData) {
+		try {
+			Path launcherJar = getLauncherJar();
+			// The class path has to be given the same way as in the usual start command
+			String classPath = launcherJar.startsWith(baseDir) ? baseDir.relativize(launcherJar).toString() : launcherJar.toString();
+
+			if (!ClassDataSharing.train(baseDir, archive, launchData.launchJar, launchData.serverJar, Arrays.asList("-jar", classPath, "nogui"), InstallerProgress.CONSOLE)) {
+				return false;
+			}
+
+			if (ManagementFactory.getRuntimeMXBean().getInputArguments().stream().noneMatch(arg -> arg.startsWith("-XX:SharedArchiveFile="))) {
+				InstallerProgress.CONSOLE.updateProgress(new MessageFormat(Utils.BUNDLE.getString("progress.generating.cds.hint")).format(new Object[]{baseDir.relativize(archive)}));
+			}
+
+			return true;
+		} catch (IOException e) {
+			// Not required to run the server
+			InstallerProgress.CONSOLE.updateProgress(new MessageFormat(Utils.BUNDLE.getString("progress.generating.cds.failed")).format(new Object[]{e}));
+			return false;
+		}
+	}
+
+	private static LaunchData readLaunchState() {
+		if (System.getProperty("fabric.customLoaderPath") != null || Boolean.getBoolean("fabric.installer.paranoid")) {
+			return null;
+		}
+
+		try {
+			return readLaunchState(getLaunchStateFile(), getLauncherJar());
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Returns null if there is no launch state or any of the files has changed since it was written.
+	 */
+	public static LaunchData readLaunchState(Path stateFile, Path launcherJar) {
+		Properties state = new Properties();
+
+		try (InputStream is = Files.newInputStream(stateFile)) {
+			state.load(is);
+
+			if (!LAUNCH_STATE_FORMAT.equals(state.getProperty("format"))
+					// Covers install.properties, a different launcher may install something else
+					|| !isUnchanged(state, "launcher", launcherJar)
+					|| !isUnchanged(state, "serverJar", Paths.get(state.getProperty("serverJar")))
+					|| !isUnchanged(state, "launchJar", Paths.get(state.getProperty("launchJar")))) {
+				return null;
+			}
+
+			return new LaunchData(Paths.get(state.getProperty("serverJar")), Paths.get(state.getProperty("launchJar")), state.getProperty("mainClass"));
+		} catch (IOException | RuntimeException e) {
+			// Missing or unreadable, validated the slow way
+			return null;
+		}
+	}
+
+	private static boolean isUnchanged(Properties state, String key, Path path) throws IOException {
+		BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+
+		return path.toString().equals(state.getProperty(key))
+				&& String.valueOf(attributes.size()).equals(state.getProperty(key + ".size"))
+				&& String.valueOf(attributes.lastModifiedTime().toMillis()).equals(state.getProperty(key + ".mtime"));
+	}
+
+	private static void writeLaunchState(LaunchData launchData) {
+		try {
+			writeLaunchState(getLaunchStateFile(), getLauncherJar(), launchData);
+		} catch (IOException | RuntimeException e) {
+			// Only makes the next start slower
+			System.err.println("Failed to write the server launch state: " + e);
+		}
+	}
+
+	/**
+	 * Records the launch data along with the size and modification time of the files it depends on.
+	 */
+	public static void writeLaunchState(Path stateFile, Path launcherJar, LaunchData launchData) throws IOException {
+		Properties state = new Properties();
+		state.setProperty("format", LAUNCH_STATE_FORMAT);
+		state.setProperty("mainClass", launchData.mainClass);
+		putFile(state, "launcher", launcherJar);
+		putFile(state, "serverJar", launchData.serverJar.toAbsolutePath());
+		putFile(state, "launchJar", launchData.launchJar.toAbsolutePath());
+
+		Path tmp = stateFile.resolveSibling(stateFile.getFileName() + ".tmp");
+
+		try (OutputStream os = Files.newOutputStream(tmp)) {
+			state.store(os, "Written by the fabric server launcher, delete to validate the installation again");
+		}
+
+		Files.move(tmp, stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private static void putFile(Properties state, String key, Path path) throws IOException {
+		BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+		state.setProperty(key, path.toString());
+		state.setProperty(key + ".size", String.valueOf(attributes.size()));
+		state.setProperty(key + ".mtime", String.valueOf(attributes.lastModifiedTime().toMillis()));
+	}
+
+	private static Path getLaunchStateFile() {
+		return Paths.get(".").toAbsolutePath().normalize().resolve(DATA_DIR).resolve(LAUNCH_STATE_NAME);
+	}
+
+	private static Path getLauncherJar() throws IOException {
+		try {
+			return Paths.get(ServerLauncher.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+		} catch (URISyntaxException e) {
+			throw new IOException("Unable to locate the launcher jar", e);
+		}
+	}
+
 	private static Properties readProperties() throws IOException {
 		Properties properties = new Properties();
 
@@ -155,12 +328,12 @@ public final class ServerLauncher {
 		return ServerLauncher.class.getClassLoader().getResource(INSTALL_CONFIG_NAME);
 	}
 
-	private static class LaunchData {
-		final Path serverJar;
-		final Path launchJar;
-		final String mainClass;
+	public static final class LaunchData {
+		public final Path serverJar;
+		public final Path launchJar;
+		public final String mainClass;
 
-		private LaunchData(Path serverJar, Path launchJar, String mainClass) {
+		public LaunchData(Path serverJar, Path launchJar, String mainClass) {
 			this.serverJar = Objects.requireNonNull(serverJar, "serverJar");
 			this.launchJar = Objects.requireNonNull(launchJar, "launchJar");
 			this.mainClass = Objects.requireNonNull(mainClass, "mainClass");
@@ -207,7 +207,7 @@ public class ClientHandler extends Handler {
 
 	@Override
 	public String cliHelp() {
-		return "-dir <install dir> -mcversion <minecraft version, default latest> -loader <loader version, default latest> -launcher [win32, microsoft_store]";
+		return "-dir <install dir> -mcversion <minecraft version, default latest> -loader <loader version, default latest> -launcher [win32, microsoft_store] -bundle <bundle file>";
 	}
 
 	@Override
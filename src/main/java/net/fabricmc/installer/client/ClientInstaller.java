@@ -18,7 +18,6 @@ package net.fabricmc.installer.client;
 
 import java.io.FileWriter;
 import java.io.IOException;
-import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
 
@@ -26,6 +25,7 @@ import mjson.Json;
 
 import net.fabricmc.installer.LoaderVersion;
 import net.fabricmc.installer.util.InstallerProgress;
+import net.fabricmc.installer.util.Mirrors;
 import net.fabricmc.installer.util.Reference;
 import net.fabricmc.installer.util.Utils;
 
@@ -62,52 +62,33 @@ public class ClientInstaller {
 		Utils.downloadFile(profileUrl, profileJson);
 		*/
 
-		URL downloadUrl;
+		String loaderMaven = legacyLoader ? Reference.LEGACY_FABRIC_MAVEN : Reference.FABRIC_MAVEN;
+		String loaderJsonPath;
 
 		if (legacyLoader) {
-			downloadUrl = new URL(String.format("https://maven.legacyfabric.net/net/fabricmc/fabric-loader-1.8.9/%s/fabric-loader-1.8.9-%s.json", loaderVersion.name, loaderVersion.name));
+			loaderJsonPath = String.format("net/fabricmc/fabric-loader-1.8.9/%s/fabric-loader-1.8.9-%s.json", loaderVersion.name, loaderVersion.name);
 		} else {
-			downloadUrl = new URL(String.format("https://maven.fabricmc.net/net/fabricmc/fabric-loader/%s/fabric-loader-%s.json", loaderVersion.name, loaderVersion.name));
+			loaderJsonPath = String.format("net/fabricmc/fabric-loader/%s/fabric-loader-%s.json", loaderVersion.name, loaderVersion.name);
 		}
 
-		Json json = Json.read(Utils.readTextFile(downloadUrl));
+		Json json = Json.read(Mirrors.readTextFile(loaderMaven, loaderJsonPath));
 
 		Json libraries = Json.array(
-				Json.object()
-						.set("name", String.format(legacyLoader ? "net.fabricmc:fabric-loader-1.8.9:%s" : "net.fabricmc:fabric-loader:%s", loaderVersion.name))
-						.set("url", legacyLoader ? "https://maven.legacyfabric.net/" : "https://maven.fabricmc.net/"),
-				Json.object()
-						.set("name", String.format("net.fabricmc:intermediary:%s", gameVersion))
-						.set("url", "https://maven.legacyfabric.net/")
+				libraryJson(String.format(legacyLoader ? "net.fabricmc:fabric-loader-1.8.9:%s" : "net.fabricmc:fabric-loader:%s", loaderVersion.name), loaderMaven),
+				libraryJson(String.format("net.fabricmc:intermediary:%s", gameVersion), Reference.LEGACY_FABRIC_MAVEN)
 		);
 
 		if (legacyLoader) {
-			libraries.add(
-					Json.object()
-							.set("name", "com.google.guava:guava:21.0")
-							.set("url", "https://maven.fabricmc.net/")
-			);
+			libraries.add(libraryJson("com.google.guava:guava:21.0", Reference.FABRIC_MAVEN));
 		}
 
 		if (Utils.compareVersions(gameVersion, "1.6.4") <= 0) {
-			libraries.add(
-					Json.object()
-							.set("name", "org.apache.logging.log4j:log4j-api:2.8.1")
-							.set("url", "https://libraries.minecraft.net/")
-			);
-			libraries.add(
-					Json.object()
-							.set("name", "org.apache.logging.log4j:log4j-core:2.8.1")
-							.set("url", "https://libraries.minecraft.net/")
-			);
+			libraries.add(libraryJson("org.apache.logging.log4j:log4j-api:2.8.1", Reference.MINECRAFT_LIBRARIES));
+			libraries.add(libraryJson("org.apache.logging.log4j:log4j-core:2.8.1", Reference.MINECRAFT_LIBRARIES));
 		}
 
 		for (Json libraryJson : json.at("libraries").at("common").asJsonList()) {
-			libraries.add(
-					Json.object()
-							.set("name", libraryJson.at("name").asString())
-							.set("url", libraryJson.at("url").asString())
-			);
+			libraries.add(libraryJson(libraryJson.at("name").asString(), libraryJson.at("url").asString()));
 		}
 
 		Json versionJson = Json.object()
@@ -125,4 +106,11 @@ public class ClientInstaller {
 
 		return profileName;
 	}
+
+	// Always the primary repository, the mirror picked for this run isn't persisted in the launcher profile
+	private static Json libraryJson(String name, String repository) {
+		return Json.object()
+				.set("name", name)
+				.set("url", repository);
+	}
 }
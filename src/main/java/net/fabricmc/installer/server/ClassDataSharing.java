@@ -0,0 +1,303 @@
+/*
+ * Copyright (c) 2016, 2017, 2018, 2019 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.installer.server;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.text.MessageFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+
+import net.fabricmc.installer.util.InstallerProgress;
+import net.fabricmc.installer.util.LaunchJarCache;
+import net.fabricmc.installer.util.Utils;
+
+/**
+ * Creates a class data sharing archive for the server with a training start, later starts map the archived classes
+ * instead of loading and verifying them again.
+ *
+ * <p>The archive is recreated whenever its key changes, see {@link #getKey(Path, Path)}. The jvm ignores an archive
+ * whose class path doesn't match, the key covers the same so such an archive is never considered up to date.
+ */
+public final class ClassDataSharing {
+	public static final String ARCHIVE_NAME = "fabric-server-launch.jsa";
+	public static long trainingTimeout = Long.getLong("fabric.installer.cdsTrainingTimeout", 600);
+
+	// Set for the training start, so a launcher doesn't try to train again
+	private static final String TRAINING_PROPERTY = "fabric.installer.cdsTraining";
+	private static final String KEY_SUFFIX = ".key";
+
+	private ClassDataSharing() {
+	}
+
+	/**
+	 * Dynamic archives are created at exit, which needs Java 13 or newer.
+	 */
+	public static boolean isSupported() {
+		String version = System.getProperty("java.specification.version");
+		return !version.startsWith("1.") && Integer.parseInt(version) >= 13;
+	}
+
+	public static boolean isTraining() {
+		return Boolean.getBoolean(TRAINING_PROPERTY);
+	}
+
+	public static String getLaunchCommand(Path dir) {
+		String archive = Files.isRegularFile(dir.resolve(ARCHIVE_NAME)) ? "-XX:SharedArchiveFile=" + ARCHIVE_NAME + " " : "";
+		return "java " + archive + "-Xmx2G -jar " + ServerInstaller.DEFAULT_LAUNCH_JAR_NAME + " nogui";
+	}
+
+	/**
+	 * Creates the archive unless an up to date one exists, by starting the server in the given directory and stopping it
+	 * once it is done loading. The launch arguments have to match the ones the server is normally started with.
+	 *
+	 * <p>Returns false if no archive could be created, the server works the same without one.
+	 */
+	public static boolean train(Path dir, Path archive, Path launchJar, Path serverJar, List<String> launchArgs, InstallerProgress progress) throws IOException {
+		if (!Files.isRegularFile(serverJar)) {
+			progress.updateProgress(new MessageFormat(Utils.BUNDLE.getString("progress.generating.cds.missing")).format(new Object[]{serverJar}));
+			return false;
+		}
+
+		if (!isSupported()) {
+			progress.updateProgress(Utils.BUNDLE.getString("progress.generating.cds.unsupported"));
+			return false;
+		}
+
+		Path keyFile = getKeyFile(archive);
+		String key = getKey(launchJar, serverJar);
+
+		if (isUpToDate(archive, key)) {
+			progress.updateProgress(Utils.BUNDLE.getString("progress.generating.cds.reused"));
+			return true;
+		}
+
+		delete(archive);
+
+		if (!isEulaAccepted(dir)) {
+			progress.updateProgress(Utils.BUNDLE.getString("progress.generating.cds.eula"));
+			return false;
+		}
+
+		progress.updateProgress(Utils.BUNDLE.getString("progress.generating.cds"));
+
+		Files.createDirectories(archive.getParent());
+		Path tmpArchive = archive.resolveSibling(archive.getFileName() + ".tmp");
+		// Keeps the training world out of the server's own
+		Path universe = Files.createTempDirectory(archive.getParent(), "cds-training");
+
+		try {
+			String failure = runTraining(dir, tmpArchive, universe, launchArgs);
+
+			if (failure == null && !Files.isRegularFile(tmpArchive)) {
+				failure = "no archive was written";
+			}
+
+			if (failure != null) {
+				progress.updateProgress(new MessageFormat(Utils.BUNDLE.getString("progress.generating.cds.failed")).format(new Object[]{failure}));
+				return false;
+			}
+
+			Files.move(tmpArchive, archive, StandardCopyOption.REPLACE_EXISTING);
+			Utils.writeToFile(keyFile, key);
+			return true;
+		} finally {
+			Files.deleteIfExists(tmpArchive);
+			Utils.deleteDirectory(universe);
+		}
+	}
+
+	/**
+	 * Removes the archive if it no longer matches the launch jar or the server jar, without creating a new one.
+	 */
+	public static void deleteIfStale(Path archive, Path launchJar, Path serverJar) throws IOException {
+		if (Files.exists(archive) && (!Files.isRegularFile(serverJar) || !isUpToDate(archive, getKey(launchJar, serverJar)))) {
+			delete(archive);
+		}
+	}
+
+	private static boolean isUpToDate(Path archive, String key) throws IOException {
+		Path keyFile = getKeyFile(archive);
+		return Files.isRegularFile(archive) && Files.isRegularFile(keyFile) && key.equals(Utils.readString(keyFile).trim());
+	}
+
+	private static void delete(Path archive) throws IOException {
+		Files.deleteIfExists(getKeyFile(archive));
+		// The jvm writes it read only, which prevents deleting it on windows
+		archive.toFile().setWritable(true);
+		Files.deleteIfExists(archive);
+	}
+
+	private static Path getKeyFile(Path archive) {
+		return archive.resolveSibling(archive.getFileName() + KEY_SUFFIX);
+	}
+
+	// Returns null on success, otherwise why the training start failed
+	private static String runTraining(Path dir, Path archive, Path universe, List<String> launchArgs) throws IOException {
+		List<String> command = new ArrayList<>();
+		command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+		command.add("-XX:ArchiveClassesAtExit=" + archive.toAbsolutePath());
+		command.add("-D" + TRAINING_PROPERTY + "=true");
+		command.addAll(launchArgs);
+		// A random port, the training start must not clash with a running server
+		command.add("--port");
+		command.add("0");
+		command.add("--universe");
+		command.add(universe.toAbsolutePath().toString());
+
+		Process process = new ProcessBuilder(command)
+				.directory(dir.toFile())
+				.redirectErrorStream(true)
+				.start();
+
+		// Kept for the error message
+		Deque<String> lastLines = new ArrayDeque<>();
+		Thread reader = new Thread(() -> readOutput(process, lastLines), "fabric-installer-cds-training");
+		reader.setDaemon(true);
+		reader.start();
+
+		try {
+			if (!process.waitFor(trainingTimeout, TimeUnit.SECONDS)) {
+				process.destroyForcibly();
+				return "timed out after " + trainingTimeout + " seconds";
+			}
+
+			reader.join(TimeUnit.SECONDS.toMillis(5));
+		} catch (InterruptedException e) {
+			process.destroyForcibly();
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted during the training start", e);
+		}
+
+		if (process.exitValue() != 0) {
+			synchronized (lastLines) {
+				return "exit code " + process.exitValue() + (lastLines.isEmpty() ? "" : ": " + String.join("\n", lastLines));
+			}
+		}
+
+		return null;
+	}
+
+	private static void readOutput(Process process, Deque<String> lastLines) {
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+			String line;
+			boolean stopping = false;
+
+			while ((line = reader.readLine()) != null) {
+				synchronized (lastLines) {
+					lastLines.addLast(line);
+					if (lastLines.size() > 10) lastLines.removeFirst();
+				}
+
+				// Every version prints 'Done (<time>)! For help, type "help"' once it has started
+				if (!stopping && line.contains("Done (") && line.contains("help")) {
+					stopping = true;
+					OutputStream os = process.getOutputStream();
+					os.write("stop\n".getBytes(StandardCharsets.UTF_8));
+					os.flush();
+				}
+			}
+		} catch (IOException e) {
+			// The process is gone, its exit code tells what happened
+		}
+	}
+
+	/**
+	 * Returns what an archive has to be created again for. The jvm rejects an archive once a jar on its class path has
+	 * a different size or modification time, so the key covers those of the launch jar, the server jar and the
+	 * libraries on the launch jar's class path, along with the launch jar fingerprint and the jvm.
+	 */
+	public static String getKey(Path launchJar, Path serverJar) throws IOException {
+		List<String> parts = new ArrayList<>();
+		parts.add(String.valueOf(LaunchJarCache.readFingerprint(launchJar)));
+		addFile(parts, launchJar);
+		addFile(parts, serverJar);
+
+		for (Path library : getClassPath(launchJar)) {
+			addFile(parts, library);
+		}
+
+		parts.add(System.getProperty("java.home"));
+		parts.add(System.getProperty("java.vm.version"));
+
+		return Utils.sha1String(String.join("\n", parts));
+	}
+
+	private static void addFile(List<String> parts, Path file) throws IOException {
+		if (!Files.isRegularFile(file)) {
+			parts.add("missing");
+			return;
+		}
+
+		parts.add(String.valueOf(Files.size(file)));
+		parts.add(String.valueOf(Files.getLastModifiedTime(file).toMillis()));
+	}
+
+	// The libraries of a launch jar that isn't shaded, relative to the launch jar
+	private static List<Path> getClassPath(Path launchJar) throws IOException {
+		List<Path> classPath = new ArrayList<>();
+
+		if (!Files.isRegularFile(launchJar)) {
+			return classPath;
+		}
+
+		try (JarFile jarFile = new JarFile(launchJar.toFile())) {
+			Manifest manifest = jarFile.getManifest();
+			String value = manifest == null ? null : manifest.getMainAttributes().getValue(Attributes.Name.CLASS_PATH);
+
+			if (value != null && !value.trim().isEmpty()) {
+				for (String entry : value.trim().split(" +")) {
+					classPath.add(launchJar.resolveSibling(entry));
+				}
+			}
+		}
+
+		return classPath;
+	}
+
+	// Without an accepted eula the server stops right away, which isn't worth archiving
+	private static boolean isEulaAccepted(Path dir) throws IOException {
+		Path eula = dir.resolve("eula.txt");
+
+		if (!Files.isRegularFile(eula)) {
+			return false;
+		}
+
+		Properties properties = new Properties();
+
+		try (Reader reader = Files.newBufferedReader(eula, StandardCharsets.UTF_8)) {
+			properties.load(reader);
+		}
+
+		return Boolean.parseBoolean(properties.getProperty("eula"));
+	}
+}
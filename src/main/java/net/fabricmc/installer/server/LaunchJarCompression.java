@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2016, 2017, 2018, 2019 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.installer.server;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.zip.Deflater;
+
+/**
+ * How the server launch jar is compressed, trading disk size for class loading speed.
+ *
+ * <p>Library entries are copied in their existing compressed form unless {@link #STORE} is used, in which case they
+ * are inflated and stored.
+ */
+public enum LaunchJarCompression {
+	/**
+	 * No compression, classes are loaded without being inflated.
+	 */
+	STORE(Deflater.NO_COMPRESSION),
+	DEFAULT(Deflater.DEFAULT_COMPRESSION);
+
+	public final int level;
+
+	LaunchJarCompression(int level) {
+		this.level = level;
+	}
+
+	public static LaunchJarCompression parse(String name) {
+		try {
+			return valueOf(name.toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException(String.format("Unknown launch jar compression %s, expected one of %s", name,
+					Arrays.stream(values()).map(value -> value.name().toLowerCase(Locale.ROOT)).collect(Collectors.joining(", "))));
+		}
+	}
+}
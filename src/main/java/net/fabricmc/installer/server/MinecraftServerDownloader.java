@@ -20,10 +20,12 @@ import java.io.IOException;
 import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
 
+import net.fabricmc.installer.util.DownloadProgress;
+import net.fabricmc.installer.util.InstallerProgress;
 import net.fabricmc.installer.util.LauncherMeta;
 import net.fabricmc.installer.util.Utils;
+import net.fabricmc.installer.util.VerificationIndex;
 import net.fabricmc.installer.util.VersionMeta;
 
 public class MinecraftServerDownloader {
@@ -33,21 +35,16 @@ public class MinecraftServerDownloader {
 		this.gameVersion = gameVersion;
 	}
 
-	public void downloadMinecraftServer(Path serverJar) throws IOException {
+	public void downloadMinecraftServer(Path serverJar, InstallerProgress progress) throws IOException {
 		if (isServerJarValid(serverJar)) {
 			System.out.println("Existing server jar valid, not downloading");
 			return;
 		}
 
-		Path serverJarTmp = serverJar.resolveSibling(serverJar.getFileName().toString() + ".tmp");
+		VersionMeta.Download download = getServerDownload();
 		Files.deleteIfExists(serverJar);
-		Utils.downloadFile(new URL(getServerDownload().url), serverJarTmp);
-
-		if (!isServerJarValid(serverJarTmp)) {
-			throw new IOException("Failed to validate downloaded server jar");
-		}
-
-		Files.move(serverJarTmp, serverJar, StandardCopyOption.REPLACE_EXISTING);
+		// Hashed while downloading and checked against the expected size and sha1 before being moved in place
+		Utils.downloadFile(new URL(download.url), serverJar, download.size, download.sha1, DownloadProgress.reporter(serverJar.getFileName().toString(), progress::updateDownloadProgress));
 	}
 
 	private boolean isServerJarValid(Path serverJar) throws IOException {
@@ -55,7 +52,14 @@ public class MinecraftServerDownloader {
 			return false;
 		}
 
-		return Utils.sha1String(serverJar).equalsIgnoreCase(getServerDownload().sha1);
+		VersionMeta.Download download = getServerDownload();
+
+		// Cheap check first, avoids hashing a jar that can't match
+		if (Files.size(serverJar) != download.size) {
+			return false;
+		}
+
+		return VerificationIndex.sha1(serverJar).equalsIgnoreCase(download.sha1);
 	}
 
 	private VersionMeta getVersionMeta() throws IOException {
@@ -68,7 +72,7 @@ public class MinecraftServerDownloader {
 		return version.getVersionMeta();
 	}
 
-	private VersionMeta.Download getServerDownload() throws IOException {
+	public VersionMeta.Download getServerDownload() throws IOException {
 		return getVersionMeta().downloads.get("server");
 	}
 }
@@ -21,6 +21,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.text.MessageFormat;
+import java.util.Arrays;
 
 import javax.swing.JPanel;
 
@@ -45,7 +46,9 @@ public class ServerHandler extends Handler {
 
 		new Thread(() -> {
 			try {
-				ServerInstaller.install(Paths.get(installLocation.getText()).toAbsolutePath(), loaderVersion, gameVersion, this);
+				Path dir = Paths.get(installLocation.getText()).toAbsolutePath();
+				ServerInstaller.install(dir, loaderVersion, gameVersion, this);
+				ClassDataSharing.deleteIfStale(dir.resolve(ClassDataSharing.ARCHIVE_NAME), dir.resolve(ServerInstaller.DEFAULT_LAUNCH_JAR_NAME), dir.resolve("server.jar"));
 				ServerPostInstallDialog.show(this);
 			} catch (Exception e) {
 				error(e);
@@ -65,22 +68,38 @@ public class ServerHandler extends Handler {
 
 		String gameVersion = getGameVersion(args);
 		LoaderVersion loaderVersion = new LoaderVersion(getLoaderVersion(args, gameVersion));
-		ServerInstaller.install(dir, loaderVersion, gameVersion, InstallerProgress.CONSOLE);
+		LaunchJarCompression compression = LaunchJarCompression.parse(args.getOrDefault("launchJarCompression", () -> "default"));
+		Path launchJar = dir.resolve(ServerInstaller.DEFAULT_LAUNCH_JAR_NAME);
+		Path serverJar = dir.resolve("server.jar");
+
+		if (args.has("classDataSharing") && !args.has("downloadMinecraft") && !Files.isRegularFile(serverJar)) {
+			throw new FileNotFoundException("The server jar is required for -classDataSharing, add -downloadMinecraft or place it at " + serverJar);
+		}
+
+		ServerInstaller.install(dir, loaderVersion, gameVersion, InstallerProgress.CONSOLE, launchJar, compression);
 
 		if (args.has("downloadMinecraft")) {
 			InstallerProgress.CONSOLE.updateProgress(Utils.BUNDLE.getString("progress.download.minecraft"));
-			Path serverJar = dir.resolve("server.jar");
 			MinecraftServerDownloader downloader = new MinecraftServerDownloader(gameVersion);
-			downloader.downloadMinecraftServer(serverJar);
+			downloader.downloadMinecraftServer(serverJar, InstallerProgress.CONSOLE);
 			InstallerProgress.CONSOLE.updateProgress(Utils.BUNDLE.getString("progress.done"));
 		}
 
-		InstallerProgress.CONSOLE.updateProgress(new MessageFormat(Utils.BUNDLE.getString("progress.done.start.server")).format(new Object[]{ServerInstaller.DEFAULT_LAUNCH_JAR_NAME}));
+		Path archive = dir.resolve(ClassDataSharing.ARCHIVE_NAME);
+
+		boolean trained = args.has("classDataSharing") && ClassDataSharing.train(dir, archive, launchJar, serverJar, Arrays.asList("-jar", launchJar.getFileName().toString(), "nogui"), InstallerProgress.CONSOLE);
+
+		if (!trained) {
+			// The launch command would otherwise still refer to it, train already reported why there is no new one
+			ClassDataSharing.deleteIfStale(archive, launchJar, serverJar);
+		}
+
+		InstallerProgress.CONSOLE.updateProgress(new MessageFormat(Utils.BUNDLE.getString("progress.done.start.server")).format(new Object[]{ClassDataSharing.getLaunchCommand(dir)}));
 	}
 
 	@Override
 	public String cliHelp() {
-		return "-dir <install dir, default current dir> -mcversion <minecraft version, default latest> -loader <loader version, default latest> -downloadMinecraft";
+		return "-dir <install dir, default current dir> -mcversion <minecraft version, default latest> -loader <loader version, default latest> -downloadMinecraft -bundle <bundle file> -launchJarCompression <store or default> -classDataSharing";
 	}
 
 	@Override
@@ -16,65 +16,79 @@
 
 package net.fabricmc.installer.server;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
-import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.text.MessageFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Deque;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
 import java.util.jar.Attributes;
-import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
-import java.util.jar.JarInputStream;
 import java.util.jar.Manifest;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
-import java.util.zip.ZipOutputStream;
 
 import mjson.Json;
 
 import net.fabricmc.installer.LoaderVersion;
+import net.fabricmc.installer.util.ArtifactCache;
+import net.fabricmc.installer.util.DownloadProgress;
 import net.fabricmc.installer.util.InstallerProgress;
+import net.fabricmc.installer.util.LaunchJarCache;
 import net.fabricmc.installer.util.Library;
+import net.fabricmc.installer.util.Mirrors;
+import net.fabricmc.installer.util.ParallelDownloader;
+import net.fabricmc.installer.util.Reference;
 import net.fabricmc.installer.util.Utils;
+import net.fabricmc.installer.util.VerificationIndex;
+import net.fabricmc.installer.util.ZipSource;
+import net.fabricmc.installer.util.ZipWriter;
 
 public class ServerInstaller {
 	private static final String servicesDir = "META-INF/services/";
 	private static final String manifestPath = "META-INF/MANIFEST.MF";
 	public static final String DEFAULT_LAUNCH_JAR_NAME = "fabric-server-launch.jar";
+	// Replaced by the Main-Class of the loader jar, the legacy loader's artifact isn't recognised and keeps it
+	public static final String DEFAULT_JAR_MAIN_CLASS = "net.fabricmc.loader.launch.server.FabricServerLauncher";
 	private static final Pattern SIGNATURE_FILE_PATTERN = Pattern.compile("META-INF/[^/]+\\.(SF|DSA|RSA|EC)");
 
 	public static void install(Path dir, LoaderVersion loaderVersion, String gameVersion, InstallerProgress progress) throws IOException {
 		Path launchJar = dir.resolve(DEFAULT_LAUNCH_JAR_NAME);
-		install(dir, loaderVersion, gameVersion, progress, launchJar);
+		install(dir, loaderVersion, gameVersion, progress, launchJar, LaunchJarCompression.DEFAULT);
 	}
 
 	private static boolean isOldGuava(String mcVersion) {
 		return !(-1 < Utils.compareVersions("1.8.9", mcVersion));
 	}
 
-	public static void install(Path dir, LoaderVersion loaderVersion, String gameVersion, InstallerProgress progress, Path launchJar) throws IOException {
-		boolean legacyLoader = loaderVersion.name.length() > 10;
-
-		if (Objects.equals(gameVersion, "1.8.9") && legacyLoader) throw new IOException("1.8.9 server is incompatible with version 0.11.x and older, please use 0.12 and newer!");
+	public static void install(Path dir, LoaderVersion loaderVersion, String gameVersion, InstallerProgress progress, Path launchJar, LaunchJarCompression compression) throws IOException {
+		checkCompatible(loaderVersion, gameVersion);
 
 		progress.updateProgress(new MessageFormat(Utils.BUNDLE.getString("progress.installing.server")).format(new Object[]{String.format("%s(%s)", loaderVersion.name, gameVersion)}));
 
@@ -85,24 +99,78 @@ public class ServerInstaller {
 
 		progress.updateProgress(Utils.BUNDLE.getString("progress.download.libraries"));
 
+		InstallPlan plan = resolve(loaderVersion, gameVersion);
+		List<Library> libraries = plan.libraries;
+		String mainClassMeta = plan.launchMainClass;
+
+		String mainClassManifest = DEFAULT_JAR_MAIN_CLASS;
+		// In library order, the launch jar depends on it
+		List<Path> libraryFiles = libraries.stream().map(library -> libsDir.resolve(library.getFileName())).collect(Collectors.toList());
+		List<Boolean> reused;
+
+		try (ParallelDownloader downloader = new ParallelDownloader()) {
+			List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+
+			for (int i = 0; i < libraries.size(); i++) {
+				Library library = libraries.get(i);
+				Path libraryFile = libraryFiles.get(i);
+				futures.add(downloader.submit(() -> installLibrary(library, libraryFile, progress)));
+			}
+
+			reused = ParallelDownloader.awaitAll(futures);
+		}
+
+		reportReused(libraryFiles, reused, progress);
+
+		for (int i = 0; i < libraries.size(); i++) {
+			if (isLoaderLibrary(libraries.get(i))) {
+				try (JarFile jarFile = new JarFile(libraryFiles.get(i).toFile())) {
+					Manifest manifest = jarFile.getManifest();
+					mainClassManifest = manifest.getMainAttributes().getValue("Main-Class");
+				}
+			}
+		}
+
+		boolean shadeLibraries = plan.shadeLibraries;
+		String fingerprint = getLaunchJarFingerprint(launchJar, mainClassMeta, mainClassManifest, libraryFiles, shadeLibraries, compression);
+
+		if (LaunchJarCache.restore(launchJar, fingerprint)) {
+			progress.updateProgress(Utils.BUNDLE.getString("progress.generating.launch.jar.reused"));
+			return;
+		}
+
+		progress.updateProgress(Utils.BUNDLE.getString("progress.generating.launch.jar"));
+		makeLaunchJar(launchJar, mainClassMeta, mainClassManifest, libraryFiles, shadeLibraries, compression, fingerprint, progress);
+		LaunchJarCache.store(launchJar, fingerprint);
+	}
+
+	/**
+	 * Resolves the libraries and main class of a server install from the loader metadata, nothing is downloaded apart
+	 * from the loader json.
+	 */
+	public static InstallPlan resolve(LoaderVersion loaderVersion, String gameVersion) throws IOException {
+		checkCompatible(loaderVersion, gameVersion);
+
+		boolean legacyLoader = isLegacyLoader(loaderVersion);
 		List<Library> libraries = new ArrayList<>();
 		String mainClassMeta;
 
 		if (loaderVersion.path == null) { // loader jar unavailable, grab everything from meta
-			URL downloadUrl;
+			String loaderMaven = legacyLoader ? Reference.LEGACY_FABRIC_MAVEN : Reference.FABRIC_MAVEN;
+			String loaderJsonPath;
 
 			if (legacyLoader) {
-				downloadUrl = new URL(String.format("https://maven.legacyfabric.net/net/fabricmc/fabric-loader-1.8.9/%s/fabric-loader-1.8.9-%s.json", loaderVersion.name, loaderVersion.name));
+				loaderJsonPath = String.format("net/fabricmc/fabric-loader-1.8.9/%s/fabric-loader-1.8.9-%s.json", loaderVersion.name, loaderVersion.name);
 			} else {
-				downloadUrl = new URL(String.format("https://maven.fabricmc.net/net/fabricmc/fabric-loader/%s/fabric-loader-%s.json", loaderVersion.name, loaderVersion.name));
+				loaderJsonPath = String.format("net/fabricmc/fabric-loader/%s/fabric-loader-%s.json", loaderVersion.name, loaderVersion.name);
 			}
 
-			Json json = Json.read(Utils.readTextFile(downloadUrl));
+			Json json = Json.read(Mirrors.readTextFile(loaderMaven, loaderJsonPath));
 
 			libraries.add(new Library(String.format(
 					legacyLoader ? "net.fabricmc:fabric-loader-1.8.9:%s" : "net.fabricmc:fabric-loader:%s", loaderVersion.name),
-					legacyLoader ? "https://maven.legacyfabric.net/" : "https://maven.fabricmc.net/", null));
-			libraries.add(new Library(String.format("net.fabricmc:intermediary:%s", gameVersion), "https://maven.legacyfabric.net/", null));
+					loaderMaven, null));
+			libraries.add(new Library(String.format("net.fabricmc:intermediary:%s", gameVersion), Reference.LEGACY_FABRIC_MAVEN, null));
 
 			for (Json libraryJson : json.at("libraries").at("common").asJsonList()) {
 				libraries.add(new Library(libraryJson));
@@ -123,14 +191,14 @@ public class ServerInstaller {
 			}
 
 			if (isOldGuava(gameVersion)) {
-				libraries.add(new Library("org.apache.logging.log4j:log4j-api:2.8.1", "https://libraries.minecraft.net/", null));
-				libraries.add(new Library("org.apache.logging.log4j:log4j-core:2.8.1", "https://libraries.minecraft.net/", null));
+				libraries.add(new Library("org.apache.logging.log4j:log4j-api:2.8.1", Reference.MINECRAFT_LIBRARIES, null));
+				libraries.add(new Library("org.apache.logging.log4j:log4j-core:2.8.1", Reference.MINECRAFT_LIBRARIES, null));
 			}
 
 			mainClassMeta = json.at("mainClass").at("server").asString();
 		} else { // loader jar available, generate library list from it
 			libraries.add(new Library(String.format("net.fabricmc:fabric-loader:%s", loaderVersion.name), null, loaderVersion.path));
-			libraries.add(new Library(String.format("net.fabricmc:intermediary:%s", gameVersion), "https://maven.legacyfabric.net/", null));
+			libraries.add(new Library(String.format("net.fabricmc:intermediary:%s", gameVersion), Reference.LEGACY_FABRIC_MAVEN, null));
 
 			try (ZipFile zf = new ZipFile(loaderVersion.path.toFile())) {
 				ZipEntry entry = zf.getEntry("fabric-installer.json");
@@ -149,51 +217,110 @@ public class ServerInstaller {
 			}
 		}
 
-		String mainClassManifest = "net.fabricmc.loader.launch.server.FabricServerLauncher";
-		List<Path> libraryFiles = new ArrayList<>();
+		boolean shadeLibraries = Utils.compareVersions(loaderVersion.name, "0.12.5") <= 0; // FabricServerLauncher in Fabric Loader 0.12.5 and earlier requires shading the libs into the launch jar
+		return new InstallPlan(libraries, mainClassMeta, shadeLibraries);
+	}
 
-		for (Library library : libraries) {
-			Path libraryFile = libsDir.resolve(library.getFileName());
+	// The launch jar takes its Main-Class from the manifest of this library
+	static boolean isLoaderLibrary(Library library) {
+		return library.name.matches("net\\.fabricmc:fabric-loader:.*");
+	}
 
-			if (library.inputPath == null) {
-				progress.updateProgress(new MessageFormat(Utils.BUNDLE.getString("progress.download.library.entry")).format(new Object[]{library.name}));
-				Utils.downloadFile(new URL(library.getURL()), libraryFile);
-			} else {
-				Files.createDirectories(libraryFile.getParent());
-				Files.copy(library.inputPath, libraryFile, StandardCopyOption.REPLACE_EXISTING);
-			}
+	private static boolean isLegacyLoader(LoaderVersion loaderVersion) {
+		return loaderVersion.name.length() > 10;
+	}
 
-			libraryFiles.add(libraryFile);
+	private static void checkCompatible(LoaderVersion loaderVersion, String gameVersion) throws IOException {
+		if (Objects.equals(gameVersion, "1.8.9") && isLegacyLoader(loaderVersion)) throw new IOException("1.8.9 server is incompatible with version 0.11.x and older, please use 0.12 and newer!");
+	}
 
-			if (library.name.matches("net\\.fabricmc:fabric-loader:.*")) {
-				try (JarFile jarFile = new JarFile(libraryFile.toFile())) {
-					Manifest manifest = jarFile.getManifest();
-					mainClassManifest = manifest.getMainAttributes().getValue("Main-Class");
-				}
+	// Identifies everything the launch jar is generated from, a jar with the same fingerprint can be used as is
+	private static String getLaunchJarFingerprint(Path launchJar, String launchMainClass, String jarMainClass, List<Path> libraryFiles, boolean shadeLibraries,
+			LaunchJarCompression compression) throws IOException {
+		String version = ServerInstaller.class.getPackage().getImplementationVersion();
+		StringBuilder sb = new StringBuilder();
+
+		sb.append("installer=").append(version != null ? version : "dev").append('\n');
+		sb.append("launchMainClass=").append(launchMainClass).append('\n');
+		sb.append("jarMainClass=").append(jarMainClass).append('\n');
+		sb.append("shade=").append(shadeLibraries).append('\n');
+		sb.append("compression=").append(compression).append('\n');
+
+		for (Path f : libraryFiles) {
+			sb.append(VerificationIndex.sha1(f));
+
+			if (!shadeLibraries) {
+				// The class path is relative to the launch jar
+				sb.append(' ').append(launchJar.getParent().relativize(f).normalize());
 			}
+
+			sb.append('\n');
 		}
 
-		progress.updateProgress(Utils.BUNDLE.getString("progress.generating.launch.jar"));
+		return Utils.sha1String(sb.toString());
+	}
 
-		boolean shadeLibraries = Utils.compareVersions(loaderVersion.name, "0.12.5") <= 0; // FabricServerLauncher in Fabric Loader 0.12.5 and earlier requires shading the libs into the launch jar
-		makeLaunchJar(launchJar, mainClassMeta, mainClassManifest, libraryFiles, shadeLibraries, progress);
+	// Returns true if the library was already installed
+	private static boolean installLibrary(Library library, Path libraryFile, InstallerProgress progress) throws IOException {
+		if (library.inputPath != null) {
+			Files.createDirectories(libraryFile.getParent());
+			Files.copy(library.inputPath, libraryFile, StandardCopyOption.REPLACE_EXISTING);
+			return false;
+		}
+
+		if (ArtifactCache.isUpToDate(library, libraryFile)) {
+			return true;
+		}
+
+		progress.updateProgress(new MessageFormat(Utils.BUNDLE.getString("progress.download.library.entry")).format(new Object[]{library.name}));
+		ArtifactCache.fetch(library, libraryFile, DownloadProgress.reporter(library.name, progress::updateDownloadProgress));
+		return false;
+	}
+
+	private static void reportReused(List<Path> libraryFiles, List<Boolean> reused, InstallerProgress progress) throws IOException {
+		int count = 0;
+		long bytes = 0;
+
+		for (int i = 0; i < libraryFiles.size(); i++) {
+			if (reused.get(i)) {
+				count++;
+				bytes += Files.size(libraryFiles.get(i));
+			}
+		}
+
+		if (count > 0) {
+			progress.updateProgress(new MessageFormat(Utils.BUNDLE.getString("progress.download.libraries.reused")).format(new Object[]{count, libraryFiles.size(), bytes / (1024.0 * 1024.0)}));
+		}
 	}
 
 	private static void makeLaunchJar(Path file, String launchMainClass, String jarMainClass, List<Path> libraryFiles,
-			boolean shadeLibraries, InstallerProgress progress) throws IOException {
+			boolean shadeLibraries, LaunchJarCompression compression, String fingerprint, InstallerProgress progress) throws IOException {
 		Files.deleteIfExists(file);
+		// Moved in place once complete, a partial jar would still carry the fingerprint. Same directory, so the class path
+		// relative to it is the same
+		Path tmp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+
+		try {
+			writeLaunchJar(tmp, launchMainClass, jarMainClass, libraryFiles, shadeLibraries, compression, fingerprint, progress);
+			Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
 
-		try (ZipOutputStream zipOutputStream = new ZipOutputStream(Files.newOutputStream(file))) {
+	private static void writeLaunchJar(Path file, String launchMainClass, String jarMainClass, List<Path> libraryFiles,
+			boolean shadeLibraries, LaunchJarCompression compression, String fingerprint, InstallerProgress progress) throws IOException {
+		try (ZipWriter zipWriter = new ZipWriter(new BufferedOutputStream(Files.newOutputStream(file)), compression.level)) {
 			Set<String> addedEntries = new HashSet<>();
 
 			addedEntries.add(manifestPath);
-			zipOutputStream.putNextEntry(new ZipEntry(manifestPath));
 
 			Manifest manifest = new Manifest();
 			Attributes mainAttributes = manifest.getMainAttributes();
 
 			mainAttributes.put(Attributes.Name.MANIFEST_VERSION, "1.0");
 			mainAttributes.put(Attributes.Name.MAIN_CLASS, jarMainClass);
+			mainAttributes.put(LaunchJarCache.FINGERPRINT_ATTRIBUTE, fingerprint);
 
 			if (!shadeLibraries) {
 				mainAttributes.put(Attributes.Name.CLASS_PATH, libraryFiles.stream()
@@ -201,48 +328,47 @@ public class ServerInstaller {
 						.collect(Collectors.joining(" ")));
 			}
 
-			manifest.write(zipOutputStream);
-
-			zipOutputStream.closeEntry();
+			ByteArrayOutputStream manifestBytes = new ByteArrayOutputStream();
+			manifest.write(manifestBytes);
+			zipWriter.write(manifestPath, manifestBytes.toByteArray());
 
 			addedEntries.add("fabric-server-launch.properties");
-			zipOutputStream.putNextEntry(new ZipEntry("fabric-server-launch.properties"));
-			zipOutputStream.write(("launch.mainClass=" + launchMainClass + "\n").getBytes(StandardCharsets.UTF_8));
-			zipOutputStream.closeEntry();
+			zipWriter.write("fabric-server-launch.properties", ("launch.mainClass=" + launchMainClass + "\n").getBytes(StandardCharsets.UTF_8));
 
 			if (shadeLibraries) {
-				Map<String, Set<String>> services = new HashMap<>();
-				byte[] buffer = new byte[32768];
+				// Sorted, the output has to be the same for the same inputs
+				Map<String, Set<String>> services = new TreeMap<>();
 
-				for (Path f : libraryFiles) {
-					progress.updateProgress(new MessageFormat(Utils.BUNDLE.getString("progress.generating.launch.jar.library")).format(new Object[]{f.getFileName().toString()}));
+				// Libraries are read on all cores, but written one after another in library order
+				int threads = Runtime.getRuntime().availableProcessors();
 
-					// read service definitions (merging them), copy other files
-					try (JarInputStream jis = new JarInputStream(Files.newInputStream(f))) {
-						JarEntry entry;
+				try (ParallelDownloader executor = new ParallelDownloader(threads)) {
+					// Prepared libraries hold all their data, only as many as there are threads are read ahead of the writer
+					Deque<CompletableFuture<PreparedLibrary>> pending = new ArrayDeque<>();
+					Iterator<Path> remaining = libraryFiles.iterator();
 
-						while ((entry = jis.getNextJarEntry()) != null) {
-							if (entry.isDirectory()) continue;
+					while (remaining.hasNext() || !pending.isEmpty()) {
+						while (remaining.hasNext() && pending.size() < threads) {
+							Path f = remaining.next();
+							pending.add(executor.submit(() -> prepareLibrary(f, compression == LaunchJarCompression.STORE)));
+						}
 
-							String name = entry.getName();
+						PreparedLibrary library = ParallelDownloader.await(pending.poll());
 
-							if (name.startsWith(servicesDir) && name.indexOf('/', servicesDir.length()) < 0) { // service definition file
-								parseServiceDefinition(name, jis, services);
-							} else if (SIGNATURE_FILE_PATTERN.matcher(name).matches()) {
-								// signature file, ignore
-							} else if (!addedEntries.add(name)) {
-								System.out.printf("duplicate file: %s%n", name);
-							} else {
-								JarEntry newEntry = new JarEntry(name);
-								zipOutputStream.putNextEntry(newEntry);
+						progress.updateProgress(new MessageFormat(Utils.BUNDLE.getString("progress.generating.launch.jar.library")).format(new Object[]{library.file.getFileName().toString()}));
 
-								int r;
+						// merge service definitions, first library wins for other files
+						library.services.forEach((name, definitions) -> services.computeIfAbsent(name, ignore -> new LinkedHashSet<>()).addAll(definitions));
 
-								while ((r = jis.read(buffer, 0, buffer.length)) >= 0) {
-									zipOutputStream.write(buffer, 0, r);
-								}
+						for (int i = 0; i < library.entries.size(); i++) {
+							ZipSource.Entry entry = library.entries.get(i);
 
-								zipOutputStream.closeEntry();
+							if (!addedEntries.add(entry.name)) {
+								System.out.printf("duplicate file: %s%n", entry.name);
+							} else if (library.inflated) {
+								zipWriter.write(entry.name, library.data.get(i));
+							} else {
+								zipWriter.copy(entry, library.data.get(i));
 							}
 						}
 					}
@@ -250,15 +376,91 @@ public class ServerInstaller {
 
 				// write service definitions
 				for (Map.Entry<String, Set<String>> entry : services.entrySet()) {
-					JarEntry newEntry = new JarEntry(entry.getKey());
-					zipOutputStream.putNextEntry(newEntry);
+					ByteArrayOutputStream definition = new ByteArrayOutputStream();
+					writeServiceDefinition(entry.getValue(), definition);
+					zipWriter.write(entry.getKey(), definition.toByteArray());
+				}
+			}
+		}
+	}
+
+	// Reads the service definitions and the compressed data of the other files, the writer decides what is used.
+	// When inflating the data is uncompressed instead, so it can be written stored without the writer's thread doing it
+	private static PreparedLibrary prepareLibrary(Path file, boolean inflate) throws IOException {
+		PreparedLibrary library = new PreparedLibrary(file, inflate);
 
-					writeServiceDefinition(entry.getValue(), zipOutputStream);
+		try (ZipSource source = ZipSource.open(file)) {
+			for (ZipSource.Entry entry : source.getEntries()) {
+				if (entry.isDirectory()) continue;
 
-					zipOutputStream.closeEntry();
+				String name = entry.name;
+
+				if (name.startsWith(servicesDir) && name.indexOf('/', servicesDir.length()) < 0) { // service definition file
+					try (InputStream is = source.getInputStream(entry)) {
+						parseServiceDefinition(name, is, library.services);
+					}
+				} else if (SIGNATURE_FILE_PATTERN.matcher(name).matches() || name.equals(manifestPath)) {
+					// signature file or the library's own manifest, ignore
+				} else {
+					library.entries.add(entry);
+					library.data.add(inflate ? readVerified(file, source, entry) : source.readRaw(entry));
 				}
 			}
 		}
+
+		return library;
+	}
+
+	private static byte[] readVerified(Path file, ZipSource source, ZipSource.Entry entry) throws IOException {
+		byte[] data = new byte[(int) entry.size];
+
+		try (DataInputStream is = new DataInputStream(source.getInputStream(entry))) {
+			is.readFully(data);
+		}
+
+		CRC32 crc = new CRC32();
+		crc.update(data, 0, data.length);
+
+		if (crc.getValue() != entry.crc) {
+			throw new IOException(String.format("CRC mismatch for %s in %s", entry.name, file.getFileName()));
+		}
+
+		return data;
+	}
+
+	/**
+	 * What a server install of a loader and game version consists of.
+	 */
+	public static final class InstallPlan {
+		public final List<Library> libraries;
+		public final String launchMainClass;
+		public final boolean shadeLibraries;
+
+		InstallPlan(List<Library> libraries, String launchMainClass, boolean shadeLibraries) {
+			this.libraries = libraries;
+			this.launchMainClass = launchMainClass;
+			this.shadeLibraries = shadeLibraries;
+		}
+
+		/**
+		 * The Main-Class the launch jar will use, or null if it is only known once the loader jar has been downloaded.
+		 */
+		public String getJarMainClass() {
+			return libraries.stream().anyMatch(ServerInstaller::isLoaderLibrary) ? null : DEFAULT_JAR_MAIN_CLASS;
+		}
+	}
+
+	private static final class PreparedLibrary {
+		final Path file;
+		final boolean inflated;
+		final List<ZipSource.Entry> entries = new ArrayList<>();
+		final List<byte[]> data = new ArrayList<>();
+		final Map<String, Set<String>> services = new LinkedHashMap<>();
+
+		PreparedLibrary(Path file, boolean inflated) {
+			this.file = file;
+			this.inflated = inflated;
+		}
 	}
 
 	private static void parseServiceDefinition(String name, InputStream rawIs, Map<String, Set<String>> services) throws IOException {
@@ -22,20 +22,15 @@ import java.awt.FlowLayout;
 import java.awt.Font;
 import java.awt.HeadlessException;
 import java.awt.Toolkit;
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.text.MessageFormat;
 import java.util.HashMap;
 import java.util.Map;
@@ -58,11 +53,12 @@ import javax.swing.UnsupportedLookAndFeelException;
 import mjson.Json;
 
 import net.fabricmc.installer.InstallerGui;
+import net.fabricmc.installer.util.DownloadProgress;
 import net.fabricmc.installer.util.LauncherMeta;
 import net.fabricmc.installer.util.Utils;
+import net.fabricmc.installer.util.VersionMeta;
 
 public class ServerPostInstallDialog extends JDialog {
-	private static final String launchCommand = "java -Xmx2G -jar fabric-server-launch.jar nogui";
 	private static final int MB = 1000000;
 
 	private final JPanel panel = new JPanel();
@@ -71,7 +67,7 @@ public class ServerPostInstallDialog extends JDialog {
 	private final String minecraftVersion;
 	private final Path installDir;
 	private final Path minecraftJar;
-	private final Path minecraftJarTmp;
+	private final String launchCommand;
 
 	private JLabel serverJarLabel;
 	private JButton downloadButton;
@@ -83,7 +79,7 @@ public class ServerPostInstallDialog extends JDialog {
 		this.minecraftVersion = (String) handler.gameVersionComboBox.getSelectedItem();
 		this.installDir = Paths.get(handler.installLocation.getText());
 		this.minecraftJar = installDir.resolve("server.jar");
-		this.minecraftJarTmp = installDir.resolve("server.jar.tmp");
+		this.launchCommand = ClassDataSharing.getLaunchCommand(installDir);
 
 		panel.setLayout(new BoxLayout(panel, BoxLayout.PAGE_AXIS));
 		initComponents();
@@ -176,8 +172,8 @@ public class ServerPostInstallDialog extends JDialog {
 		downloadButton.setEnabled(false);
 
 		try {
+			// The .tmp file is kept, the download continues from where a previous attempt stopped
 			Files.deleteIfExists(minecraftJar);
-			Files.deleteIfExists(minecraftJarTmp);
 		} catch (IOException e) {
 			color(serverJarLabel, Color.RED).setText(e.getMessage());
 			serverHandler.error(e);
@@ -186,32 +182,13 @@ public class ServerPostInstallDialog extends JDialog {
 
 		new Thread(() -> {
 			try {
-				URL url = new URL(LauncherMeta.getLauncherMeta().getVersion(minecraftVersion).getVersionMeta().downloads.get("server").url);
-				HttpURLConnection httpConnection = (HttpURLConnection) url.openConnection();
-				int finalSize = httpConnection.getContentLength();
+				VersionMeta.Download download = LauncherMeta.getLauncherMeta().getVersion(minecraftVersion).getVersionMeta().downloads.get("server");
 
-				BufferedInputStream inputStream = new BufferedInputStream(httpConnection.getInputStream());
-
-				OutputStream outputStream = Files.newOutputStream(minecraftJarTmp);
-				BufferedOutputStream bufferedOutputStream = new BufferedOutputStream(outputStream, 1024);
-
-				byte[] buffer = new byte[1024];
-				long downloaded = 0;
-				int len;
-
-				while ((len = inputStream.read(buffer, 0, 1024)) >= 0) {
-					downloaded += len;
-
-					final String labelText = new MessageFormat(Utils.BUNDLE.getString("prompt.server.downloading")).format(new Object[] {downloaded / MB, finalSize / MB});
+				// Rate limited, every chunk would queue its own label update on the EDT
+				Utils.downloadFile(new URL(download.url), minecraftJar, download.size, download.sha1, DownloadProgress.reporter(minecraftJar.getFileName().toString(), progress -> {
+					final String labelText = new MessageFormat(Utils.BUNDLE.getString("prompt.server.downloading")).format(new Object[] {progress.bytesDone / MB, download.size / MB});
 					SwingUtilities.invokeLater(() -> color(serverJarLabel, Color.BLUE).setText(labelText));
-
-					bufferedOutputStream.write(buffer, 0, len);
-				}
-
-				bufferedOutputStream.close();
-				inputStream.close();
-
-				Files.move(minecraftJarTmp, minecraftJar, StandardCopyOption.REPLACE_EXISTING);
+				}));
 
 				updateServerJarLabel();
 				downloadButton.setEnabled(true);
@@ -0,0 +1,393 @@
+/*
+ * Copyright (c) 2016, 2017, 2018, 2019 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.installer.util;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A user level cache of maven artifacts shared between installs.
+ *
+ * <p>Artifacts are stored once by their sha1 under {@code objects/}, {@code index/} maps the artifact url (repository
+ * and maven coordinate) to that sha1. The modification time of the index entry is used to track when an artifact was
+ * last used, the least recently used artifacts are evicted once the cache grows past {@link #maxSize}. Objects no
+ * index entry refers to any more are removed at the same time.
+ *
+ * <p>Files are only ever published with an atomic move, downloads of the same artifact and evictions are serialised
+ * with file locks so several installers may share one cache.
+ */
+public class ArtifactCache {
+	public static boolean enabled = !Boolean.getBoolean("fabric.installer.noCache");
+	public static long maxSize = Long.getLong("fabric.installer.cacheSize", 1024) * 1024 * 1024;
+
+	private static final ConcurrentMap<String, Object> LOCAL_LOCKS = new ConcurrentHashMap<>();
+	private static final long UNREFERENCED_OBJECT_AGE = TimeUnit.MINUTES.toMillis(10);
+
+	private final Path objectsDir;
+	private final Path indexDir;
+	private final Path locksDir;
+
+	public ArtifactCache(Path dir) {
+		this.objectsDir = dir.resolve("objects");
+		this.indexDir = dir.resolve("index");
+		this.locksDir = dir.resolve("locks");
+	}
+
+	public static ArtifactCache get() {
+		return new ArtifactCache(Utils.cacheDir.resolve("artifacts"));
+	}
+
+	/**
+	 * Places the library at the target path, from the cache if possible otherwise by downloading it.
+	 */
+	public static void fetch(Library library, Path target, DownloadProgress.Listener progress) throws IOException {
+		if (!enabled) {
+			download(library, target, progress);
+			return;
+		}
+
+		try {
+			get().fetchCached(library, target, progress);
+		} catch (CacheException e) {
+			System.err.printf("Artifact cache unavailable (%s), downloading %s directly%n", e.getCause(), library.name);
+			download(library, target, progress);
+		}
+	}
+
+	/**
+	 * Checks whether the file already is the expected artifact, using the checksum recorded in the cache if possible
+	 * otherwise the one provided by the repository. Returns false if no checksum is available.
+	 */
+	public static boolean isUpToDate(Library library, Path file) throws IOException {
+		if (!Files.isRegularFile(file)) {
+			return false;
+		}
+
+		Path object = getCached(library);
+		String sha1;
+
+		if (object != null) {
+			// Cheap check first, avoids hashing a file that can't match
+			if (Files.size(object) != Files.size(file)) {
+				return false;
+			}
+
+			sha1 = object.getFileName().toString();
+		} else {
+			sha1 = readRemoteSha1(library);
+		}
+
+		return sha1 != null && sha1.equals(VerificationIndex.sha1(file));
+	}
+
+	/**
+	 * Returns the cached copy of the artifact without using the network, or null if it isn't cached. The file name is
+	 * its sha1.
+	 */
+	public static Path getCached(Library library) throws IOException {
+		return enabled ? get().getCachedObject(library) : null;
+	}
+
+	// Returns null if the artifact isn't cached
+	private Path getCachedObject(Library library) throws IOException {
+		try {
+			Path object = getObjectPath(Utils.readString(indexDir.resolve(getKey(new URL(library.getURL())))).trim());
+			return Files.isRegularFile(object) ? object : null;
+		} catch (NoSuchFileException | CacheException e) {
+			return null;
+		}
+	}
+
+	// Verified while downloading if the repository provides a checksum
+	private static String download(Library library, Path target, DownloadProgress.Listener progress) throws IOException {
+		return Mirrors.downloadFile(library.url, library.getMavenPath(), target, -1, readRemoteSha1(library), progress);
+	}
+
+	private void fetchCached(Library library, Path target, DownloadProgress.Listener progress) throws IOException {
+		// Keyed by the primary repository, whichever mirror it ends up being downloaded from
+		String key = getKey(new URL(library.getURL()));
+
+		if (materialize(key, target)) {
+			return;
+		}
+
+		withLock(key, () -> {
+			// Another installer may have downloaded it while we were waiting for the lock
+			if (materialize(key, target)) {
+				return null;
+			}
+
+			String sha1 = download(library, target, progress);
+			store(key, target, sha1);
+			return null;
+		});
+	}
+
+	private boolean materialize(String key, Path target) throws IOException {
+		Path indexFile = indexDir.resolve(key);
+		String sha1;
+
+		try {
+			sha1 = Utils.readString(indexFile).trim();
+		} catch (NoSuchFileException e) {
+			return false;
+		} catch (IOException e) {
+			throw new CacheException(e);
+		}
+
+		Path object = getObjectPath(sha1);
+
+		if (!Files.isRegularFile(object)) {
+			return false;
+		}
+
+		Files.createDirectories(target.getParent());
+		Files.deleteIfExists(target);
+
+		try {
+			Files.createLink(target, object);
+		} catch (NoSuchFileException e) {
+			return false; // evicted by someone else
+		} catch (IOException | UnsupportedOperationException e) {
+			// Different file system or no hardlink support
+			try {
+				Files.copy(object, target, StandardCopyOption.REPLACE_EXISTING);
+			} catch (NoSuchFileException e2) {
+				return false;
+			}
+		}
+
+		VerificationIndex.record(target, sha1);
+
+		try {
+			Files.setLastModifiedTime(indexFile, FileTime.fromMillis(System.currentTimeMillis()));
+		} catch (IOException e) {
+			// Only used for eviction order
+		}
+
+		return true;
+	}
+
+	private void store(String key, Path file, String sha1) {
+		try {
+			Path object = getObjectPath(sha1);
+
+			if (!Files.exists(object)) {
+				publish(object, tmp -> Files.copy(file, tmp, StandardCopyOption.REPLACE_EXISTING));
+			}
+
+			publish(indexDir.resolve(key), tmp -> Utils.writeToFile(tmp, sha1));
+			evict();
+		} catch (IOException e) {
+			// The file has been downloaded, not being able to cache it shouldn't fail the install
+			System.err.printf("Failed to store %s in the artifact cache: %s%n", file.getFileName(), e);
+		}
+	}
+
+	private void evict() throws IOException {
+		if (!Files.isDirectory(indexDir)) {
+			return;
+		}
+
+		withLock(".evict", () -> {
+			List<Path> entries;
+
+			try (Stream<Path> stream = Files.walk(indexDir)) {
+				// Temporary files are entries still being published
+				entries = stream.filter(path -> Files.isRegularFile(path) && !path.getFileName().toString().endsWith(".tmp"))
+						.sorted(Comparator.comparing(ArtifactCache::lastModified).reversed())
+						.collect(Collectors.toList());
+			}
+
+			List<Path> evicted = new ArrayList<>();
+			// Artifacts with the same content share an object, it is only counted once and kept while referenced
+			Set<String> retained = new HashSet<>();
+			long size = 0;
+
+			for (Path entry : entries) {
+				String sha1 = Utils.readString(entry).trim();
+
+				if (retained.contains(sha1)) {
+					continue;
+				}
+
+				Path object = getObjectPath(sha1);
+				long objectSize = Files.exists(object) ? Files.size(object) : 0;
+
+				if (size + objectSize > maxSize) {
+					evicted.add(entry);
+				} else {
+					retained.add(sha1);
+					size += objectSize;
+				}
+			}
+
+			for (Path entry : evicted) {
+				String sha1 = Utils.readString(entry).trim();
+				Files.deleteIfExists(entry);
+
+				if (retained.contains(sha1)) {
+					continue;
+				}
+
+				try {
+					Files.deleteIfExists(getObjectPath(sha1));
+				} catch (IOException e) {
+					// Still in use, will be removed next time
+				}
+			}
+
+			deleteUnreferencedObjects(retained);
+			return null;
+		});
+	}
+
+	// Left behind when an artifact is stored again with different content, which points its entry at a new object
+	private void deleteUnreferencedObjects(Set<String> retained) throws IOException {
+		if (!Files.isDirectory(objectsDir)) {
+			return;
+		}
+
+		List<Path> objects;
+
+		try (Stream<Path> stream = Files.walk(objectsDir)) {
+			objects = stream.filter(path -> Files.isRegularFile(path) && !path.getFileName().toString().endsWith(".tmp"))
+					.collect(Collectors.toList());
+		}
+
+		// A concurrent store publishes the object before its index entry, recent objects may not be referenced yet
+		long cutoff = System.currentTimeMillis() - UNREFERENCED_OBJECT_AGE;
+
+		for (Path object : objects) {
+			if (!retained.contains(object.getFileName().toString()) && lastModified(object) < cutoff) {
+				try {
+					Files.deleteIfExists(object);
+				} catch (IOException e) {
+					// Still in use, will be removed next time
+				}
+			}
+		}
+	}
+
+	private <T> T withLock(String key, ParallelDownloader.IOCallable<T> callable) throws IOException {
+		Path lockFile = locksDir.resolve(key + ".lock");
+
+		// File locks are held by the whole jvm, so threads of this process have to be serialised separately
+		synchronized (LOCAL_LOCKS.computeIfAbsent(key, k -> new Object())) {
+			FileChannel channel;
+
+			try {
+				Files.createDirectories(locksDir);
+				channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+			} catch (IOException e) {
+				throw new CacheException(e);
+			}
+
+			// Closing the channel releases the lock
+			try (FileChannel c = channel) {
+				c.lock();
+				return callable.call();
+			}
+		}
+	}
+
+	private Path getObjectPath(String sha1) throws IOException {
+		if (!sha1.matches("[0-9a-f]{40}")) {
+			throw new CacheException(new IOException("Corrupt cache index entry: " + sha1));
+		}
+
+		return objectsDir.resolve(sha1.substring(0, 2)).resolve(sha1);
+	}
+
+	private static void publish(Path path, IOConsumer<Path> writer) throws IOException {
+		Files.createDirectories(path.getParent());
+		Path tmp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+
+		try {
+			writer.accept(tmp);
+
+			try {
+				Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (FileAlreadyExistsException e) {
+				// Published by someone else in the meantime
+			}
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+
+	// Returns null if the repository doesn't provide one
+	public static String readRemoteSha1(Library library) throws IOException {
+		try {
+			String sha1 = Mirrors.readTextFile(library.url, library.getMavenPath() + ".sha1").trim();
+			// Some repositories append the file name
+			int space = sha1.indexOf(' ');
+			return (space < 0 ? sha1 : sha1.substring(0, space)).toLowerCase(Locale.ROOT);
+		} catch (FileNotFoundException e) {
+			return null;
+		}
+	}
+
+	// Hashed, a readable form of the url would either be ambiguous or not a valid file name everywhere
+	private static String getKey(URL url) {
+		return Utils.sha1String(url.getHost() + url.getPath()) + ".sha1";
+	}
+
+	private static long lastModified(Path path) {
+		try {
+			return Files.getLastModifiedTime(path).toMillis();
+		} catch (IOException e) {
+			return 0;
+		}
+	}
+
+	@FunctionalInterface
+	private interface IOConsumer<T> {
+		void accept(T value) throws IOException;
+	}
+
+	/**
+	 * Thrown when the cache itself is unusable, the artifact can still be downloaded directly.
+	 */
+	private static class CacheException extends IOException {
+		private static final long serialVersionUID = 1L;
+
+		CacheException(IOException cause) {
+			super(cause);
+		}
+	}
+}
@@ -18,23 +18,55 @@ package net.fabricmc.installer.util;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
 import java.util.function.Consumer;
 
 public class CompletableHandler<T> {
 	private boolean complete;
+	private T value;
+	private volatile Executor callbackExecutor = Runnable::run;
 
-	private List<Consumer<T>> completeConsumers = new ArrayList<>();
+	private final List<Consumer<T>> completeConsumers = new ArrayList<>();
 
+	/**
+	 * Sets where the consumers are called, by default on the thread completing the handler.
+	 */
+	public void setCallbackExecutor(Executor callbackExecutor) {
+		this.callbackExecutor = callbackExecutor;
+	}
+
+	/**
+	 * Called on every completion, a consumer added after a completion receives the latest value right away.
+	 */
 	public void onComplete(Consumer<T> completeConsumer) {
-		completeConsumers.add(completeConsumer);
+		T latest;
+
+		synchronized (completeConsumers) {
+			completeConsumers.add(completeConsumer);
+			if (!complete) return;
+
+			latest = value;
+		}
+
+		callbackExecutor.execute(() -> completeConsumer.accept(latest));
 	}
 
 	protected void complete(T value) {
-		complete = true;
-		completeConsumers.forEach(listConsumer -> listConsumer.accept(value));
+		List<Consumer<T>> consumers;
+
+		synchronized (completeConsumers) {
+			this.complete = true;
+			this.value = value;
+			consumers = new ArrayList<>(completeConsumers);
+		}
+
+		Executor executor = callbackExecutor;
+		consumers.forEach(consumer -> executor.execute(() -> consumer.accept(value)));
 	}
 
 	public boolean isComplete() {
-		return complete;
+		synchronized (completeConsumers) {
+			return complete;
+		}
 	}
 }
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2016, 2017, 2018, 2019 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.installer.util;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * A snapshot of a running download.
+ *
+ * <p>Downloads report every chunk to a {@link Listener}, {@link #reporter(String, Consumer)} turns those into
+ * snapshots delivered at most once per {@link #interval} milliseconds, so consumers such as a Swing label aren't
+ * flooded with updates. The final update of a download is always delivered.
+ */
+public final class DownloadProgress {
+	public static long interval = Long.getLong("fabric.installer.progressInterval", 100);
+
+	private static final double MB = 1024 * 1024;
+
+	public final String artifact;
+	public final long bytesDone;
+	/**
+	 * The size of the file, or -1 if unknown.
+	 */
+	public final long bytesTotal;
+	/**
+	 * The average speed of this download so far.
+	 */
+	public final double bytesPerSecond;
+	public final boolean done;
+
+	public DownloadProgress(String artifact, long bytesDone, long bytesTotal, double bytesPerSecond, boolean done) {
+		this.artifact = artifact;
+		this.bytesDone = bytesDone;
+		this.bytesTotal = bytesTotal;
+		this.bytesPerSecond = bytesPerSecond;
+		this.done = done;
+	}
+
+	/**
+	 * @return the estimated number of seconds until the download completes, or -1 if unknown
+	 */
+	public long getSecondsRemaining() {
+		if (bytesTotal < 0 || bytesPerSecond <= 0) {
+			return -1;
+		}
+
+		return (long) Math.ceil((bytesTotal - bytesDone) / bytesPerSecond);
+	}
+
+	public double getMegabytesDone() {
+		return bytesDone / MB;
+	}
+
+	public double getMegabytesTotal() {
+		return bytesTotal < 0 ? -1 : bytesTotal / MB;
+	}
+
+	public double getMegabytesPerSecond() {
+		return bytesPerSecond / MB;
+	}
+
+	@Override
+	public String toString() {
+		if (done) {
+			return String.format(Locale.ROOT, "Downloaded %s (%.1f MB, %.1f MB/s)", artifact, getMegabytesDone(), getMegabytesPerSecond());
+		}
+
+		return String.format(Locale.ROOT, "Downloading %s: %.1f/%s MB (%.1f MB/s)", artifact, getMegabytesDone(),
+				bytesTotal < 0 ? "?" : String.format(Locale.ROOT, "%.1f", getMegabytesTotal()), getMegabytesPerSecond());
+	}
+
+	/**
+	 * Returns a listener for a single download, passing rate limited snapshots to the consumer.
+	 */
+	public static Listener reporter(String artifact, Consumer<DownloadProgress> consumer) {
+		return new Reporter(artifact, consumer);
+	}
+
+	/**
+	 * Receives every chunk of a download.
+	 */
+	@FunctionalInterface
+	public interface Listener {
+		/**
+		 * @param bytesDone the number of bytes of the file present so far
+		 * @param bytesTotal the size of the file, or -1 if unknown
+		 */
+		void update(long bytesDone, long bytesTotal);
+	}
+
+	private static final class Reporter implements Listener {
+		private final String artifact;
+		private final Consumer<DownloadProgress> consumer;
+		private long startTime;
+		private long startBytes;
+		private long lastReport;
+		private long lastDone = -1;
+
+		Reporter(String artifact, Consumer<DownloadProgress> consumer) {
+			this.artifact = artifact;
+			this.consumer = consumer;
+		}
+
+		@Override
+		public void update(long bytesDone, long bytesTotal) {
+			long now = System.nanoTime();
+			boolean done = bytesTotal >= 0 && bytesDone >= bytesTotal;
+
+			if (lastDone < 0) {
+				// Bytes resumed from an earlier attempt don't count towards the speed
+				startTime = now;
+				startBytes = bytesDone;
+			} else if (done ? bytesDone == lastDone : now - lastReport < TimeUnit.MILLISECONDS.toNanos(interval)) {
+				return;
+			}
+
+			lastReport = now;
+			lastDone = bytesDone;
+
+			double seconds = (now - startTime) / 1e9;
+			double bytesPerSecond = seconds > 0 ? (bytesDone - startBytes) / seconds : 0;
+			consumer.accept(new DownloadProgress(artifact, bytesDone, bytesTotal, bytesPerSecond, done));
+		}
+	}
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2016, 2017, 2018, 2019 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.installer.util;
+
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * All network access of the installer goes through the transport returned by {@link #get()}.
+ *
+ * <p>The default implementation is {@link UrlConnectionTransport}, tests or embedders may replace it with
+ * {@link #set(HttpTransport)}.
+ */
+public abstract class HttpTransport {
+	public static final int HTTP_OK = 200;
+	public static final int HTTP_PARTIAL = 206;
+	public static final int HTTP_NOT_MODIFIED = 304;
+	public static final int HTTP_NOT_FOUND = 404;
+	public static final int HTTP_GONE = 410;
+	public static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
+
+	private static volatile HttpTransport instance;
+
+	public static HttpTransport get() {
+		HttpTransport transport = instance;
+
+		if (transport == null) {
+			synchronized (HttpTransport.class) {
+				if (instance == null) {
+					instance = new UrlConnectionTransport();
+				}
+
+				transport = instance;
+			}
+		}
+
+		return transport;
+	}
+
+	public static void set(HttpTransport transport) {
+		instance = transport;
+	}
+
+	/**
+	 * Sends a GET request for the url.
+	 *
+	 * <p>The response is returned for every status code, the caller must close it to release the connection.
+	 */
+	public abstract Response get(URL url, Map<String, String> headers) throws IOException;
+
+	public Response get(URL url) throws IOException {
+		return get(url, Collections.emptyMap());
+	}
+
+	/**
+	 * Opens the body of a successful GET request, throws for any other response.
+	 */
+	public InputStream openStream(URL url) throws IOException {
+		Response response = get(url);
+
+		try {
+			response.checkSuccess();
+			return response.getBody();
+		} catch (IOException | RuntimeException e) {
+			response.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Sends a request with the given headers, used where the server to send it to is decided late.
+	 */
+	@FunctionalInterface
+	public interface Opener {
+		Response open(Map<String, String> headers) throws IOException;
+	}
+
+	public abstract static class Response implements Closeable {
+		protected final URL url;
+
+		protected Response(URL url) {
+			this.url = url;
+		}
+
+		public URL getUrl() {
+			return url;
+		}
+
+		public abstract int getStatusCode();
+
+		public abstract String getHeader(String name);
+
+		/**
+		 * @return the length of the body, or -1 if unknown
+		 */
+		public abstract long getContentLength();
+
+		/**
+		 * Closing the returned stream closes the response.
+		 */
+		public abstract InputStream getBody() throws IOException;
+
+		public boolean isSuccess() {
+			return getStatusCode() / 100 == 2;
+		}
+
+		public void checkSuccess() throws IOException {
+			int statusCode = getStatusCode();
+
+			if (statusCode == HTTP_NOT_FOUND || statusCode == HTTP_GONE) {
+				throw new FileNotFoundException(url.toString());
+			} else if (!isSuccess()) {
+				throw new IOException(String.format("Server returned HTTP response code: %d for URL: %s", statusCode, url));
+			}
+		}
+	}
+}
@@ -0,0 +1,451 @@
+/*
+ * Copyright (c) 2016, 2017, 2018, 2019 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.installer.util;
+
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import mjson.Json;
+
+/**
+ * A zip of every file an install downloads, so the install can be repeated without network access.
+ *
+ * <p>{@code bundle.json} maps each url to the sha1 and size of its content, which is stored uncompressed and only once
+ * per sha1 under {@code files/}. An opened bundle is a transport serving those files, a request for anything else
+ * fails as not found. Bundles are written by a {@link Recorder} that captures the responses of a real install.
+ */
+public class InstallBundle extends HttpTransport implements Closeable {
+	private static final String INDEX_NAME = "bundle.json";
+	private static final String FILES_DIR = "files/";
+	private static final int FORMAT = 1;
+
+	private final ZipFile zipFile;
+	private final String gameVersion;
+	private final String loaderVersion;
+	private final Map<String, Entry> entries;
+
+	private InstallBundle(ZipFile zipFile, String gameVersion, String loaderVersion, Map<String, Entry> entries) {
+		this.zipFile = zipFile;
+		this.gameVersion = gameVersion;
+		this.loaderVersion = loaderVersion;
+		this.entries = entries;
+	}
+
+	public static InstallBundle open(Path file) throws IOException {
+		ZipFile zipFile = new ZipFile(file.toFile());
+
+		try {
+			ZipEntry indexEntry = zipFile.getEntry(INDEX_NAME);
+
+			if (indexEntry == null) {
+				throw new IOException(file + " is not an install bundle");
+			}
+
+			Json index;
+
+			try (InputStream is = zipFile.getInputStream(indexEntry)) {
+				index = Json.read(Utils.readString(is));
+			}
+
+			if (index.at("format").asInteger() != FORMAT) {
+				throw new IOException("Unsupported install bundle format " + index.at("format") + " in " + file);
+			}
+
+			Map<String, Entry> entries = new HashMap<>();
+			index.at("files").asJsonMap().forEach((url, json) -> entries.put(url, new Entry(json.at("sha1").asString(), json.at("size").asLong())));
+
+			System.out.printf("Installing from bundle %s (%d files)%n", file, entries.size());
+			return new InstallBundle(zipFile, index.at("gameVersion").asString(), index.at("loaderVersion").asString(), entries);
+		} catch (IOException | RuntimeException e) {
+			zipFile.close();
+			throw e;
+		}
+	}
+
+	public String getGameVersion() {
+		return gameVersion;
+	}
+
+	public String getLoaderVersion() {
+		return loaderVersion;
+	}
+
+	/**
+	 * Serves the whole file for every request, ranges and conditional headers are ignored.
+	 */
+	@Override
+	public Response get(URL url, Map<String, String> headers) throws IOException {
+		Entry entry = entries.get(url.toString());
+
+		if (entry == null) {
+			throw new FileNotFoundException(url + " is not part of the install bundle");
+		}
+
+		ZipEntry zipEntry = zipFile.getEntry(FILES_DIR + entry.sha1);
+
+		if (zipEntry == null) {
+			throw new IOException("Install bundle is missing the content of " + url);
+		}
+
+		return new BundleResponse(url, entry, zipEntry);
+	}
+
+	@Override
+	public void close() throws IOException {
+		zipFile.close();
+	}
+
+	private static final class Entry {
+		final String sha1;
+		final long size;
+
+		Entry(String sha1, long size) {
+			this.sha1 = sha1;
+			this.size = size;
+		}
+	}
+
+	private final class BundleResponse extends Response {
+		private final Entry entry;
+		private final ZipEntry zipEntry;
+		private InputStream body;
+
+		BundleResponse(URL url, Entry entry, ZipEntry zipEntry) {
+			super(url);
+			this.entry = entry;
+			this.zipEntry = zipEntry;
+		}
+
+		@Override
+		public int getStatusCode() {
+			return HTTP_OK;
+		}
+
+		@Override
+		public String getHeader(String name) {
+			return null;
+		}
+
+		@Override
+		public long getContentLength() {
+			return entry.size;
+		}
+
+		@Override
+		public InputStream getBody() throws IOException {
+			if (body == null) {
+				body = new VerifyingInputStream(zipFile.getInputStream(zipEntry), entry.sha1, url);
+			}
+
+			return body;
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (body != null) body.close();
+		}
+	}
+
+	// Checks the content against the recorded sha1 once it has been read to the end
+	private static final class VerifyingInputStream extends FilterInputStream {
+		private final MessageDigest digest = Utils.sha1Digest();
+		private final String sha1;
+		private final URL url;
+		private boolean verified;
+
+		VerifyingInputStream(InputStream in, String sha1, URL url) {
+			super(in);
+			this.sha1 = sha1;
+			this.url = url;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+
+			if (b < 0) {
+				verify();
+			} else {
+				digest.update((byte) b);
+			}
+
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int read = super.read(b, off, len);
+
+			if (read < 0) {
+				verify();
+			} else {
+				digest.update(b, off, read);
+			}
+
+			return read;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			throw new IOException("skip is not supported");
+		}
+
+		private void verify() throws IOException {
+			if (verified) return;
+			verified = true;
+
+			if (!Utils.bytesToHex(digest.digest()).equalsIgnoreCase(sha1)) {
+				throw new IOException("Install bundle content of " + url + " is corrupt");
+			}
+		}
+	}
+
+	/**
+	 * Transport passing requests on to another transport, recording every complete response to write a bundle from.
+	 *
+	 * <p>Range and conditional headers are dropped so every response is a complete file, caches should be disabled
+	 * while recording as anything they serve never reaches the transport.
+	 */
+	public static final class Recorder extends HttpTransport implements Closeable {
+		private static final Set<String> DROPPED_HEADERS = new HashSet<>(Arrays.asList("Range", "If-None-Match", "If-Modified-Since"));
+
+		private final HttpTransport delegate;
+		private final Path workDir;
+		private final Map<String, Path> recorded = new ConcurrentHashMap<>();
+
+		public Recorder(HttpTransport delegate) throws IOException {
+			this.delegate = delegate;
+			this.workDir = Files.createTempDirectory("fabric-installer-bundle");
+		}
+
+		@Override
+		public Response get(URL url, Map<String, String> headers) throws IOException {
+			Map<String, String> filtered = new HashMap<>(headers);
+			filtered.keySet().removeAll(DROPPED_HEADERS);
+
+			return new RecordingResponse(delegate.get(url, filtered));
+		}
+
+		public void write(Path output, String gameVersion, String loaderVersion) throws IOException {
+			Json files = Json.object();
+			Set<String> written = new HashSet<>();
+			Path tmp = output.resolveSibling(output.getFileName() + ".tmp");
+
+			try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(tmp))) {
+				// Sorted so the same install always produces the same bundle
+				for (Map.Entry<String, Path> entry : new TreeMap<>(recorded).entrySet()) {
+					Path file = entry.getValue();
+					String sha1 = Utils.sha1String(file);
+					long size = Files.size(file);
+
+					files.set(entry.getKey(), Json.object().set("sha1", sha1).set("size", size));
+
+					if (written.add(sha1)) {
+						writeStored(zos, FILES_DIR + sha1, file, size);
+					}
+				}
+
+				Json index = Json.object()
+						.set("format", FORMAT)
+						.set("gameVersion", gameVersion)
+						.set("loaderVersion", loaderVersion)
+						.set("files", files);
+
+				zos.putNextEntry(new ZipEntry(INDEX_NAME));
+				zos.write(index.toString().getBytes(StandardCharsets.UTF_8));
+				zos.closeEntry();
+			}
+
+			Files.move(tmp, output, StandardCopyOption.REPLACE_EXISTING);
+			System.out.printf("Wrote %d files to %s%n", recorded.size(), output);
+		}
+
+		// Already compressed jars gain nothing from deflating, stored entries are read back at disk speed
+		private static void writeStored(ZipOutputStream zos, String name, Path file, long size) throws IOException {
+			CRC32 crc = new CRC32();
+
+			try (InputStream is = new CheckedInputStream(Files.newInputStream(file), crc)) {
+				byte[] buffer = new byte[64 * 1024];
+
+				while (is.read(buffer) >= 0) {
+					// only the checksum is needed
+				}
+			}
+
+			ZipEntry zipEntry = new ZipEntry(name);
+			zipEntry.setMethod(ZipEntry.STORED);
+			zipEntry.setSize(size);
+			zipEntry.setCompressedSize(size);
+			zipEntry.setCrc(crc.getValue());
+
+			zos.putNextEntry(zipEntry);
+			Files.copy(file, zos);
+			zos.closeEntry();
+		}
+
+		@Override
+		public void close() throws IOException {
+			Utils.deleteDirectory(workDir);
+		}
+
+		private final class RecordingResponse extends Response {
+			private final Response response;
+			private InputStream body;
+
+			RecordingResponse(Response response) {
+				super(response.getUrl());
+				this.response = response;
+			}
+
+			@Override
+			public int getStatusCode() {
+				return response.getStatusCode();
+			}
+
+			@Override
+			public String getHeader(String name) {
+				return response.getHeader(name);
+			}
+
+			@Override
+			public long getContentLength() {
+				return response.getContentLength();
+			}
+
+			@Override
+			public InputStream getBody() throws IOException {
+				if (body == null) {
+					body = response.getStatusCode() == HTTP_OK ? new RecordingInputStream(response.getBody(), url, getContentLength()) : response.getBody();
+				}
+
+				return body;
+			}
+
+			@Override
+			public void close() throws IOException {
+				try {
+					if (body != null) body.close();
+				} finally {
+					response.close();
+				}
+			}
+		}
+
+		private final class RecordingInputStream extends FilterInputStream {
+			private final URL url;
+			private final long contentLength;
+			private final Path file;
+			private final OutputStream out;
+			private long count;
+			private boolean finished;
+
+			RecordingInputStream(InputStream in, URL url, long contentLength) throws IOException {
+				super(in);
+				this.url = url;
+				this.contentLength = contentLength;
+				this.file = Files.createTempFile(workDir, "response", ".tmp");
+				this.out = Files.newOutputStream(file);
+			}
+
+			@Override
+			public int read() throws IOException {
+				int b = super.read();
+
+				if (b < 0) {
+					finish();
+				} else {
+					out.write(b);
+					count++;
+				}
+
+				return b;
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				int read = super.read(b, off, len);
+
+				if (read < 0) {
+					finish();
+				} else {
+					out.write(b, off, read);
+					count += read;
+				}
+
+				return read;
+			}
+
+			@Override
+			public long skip(long n) throws IOException {
+				throw new IOException("skip is not supported");
+			}
+
+			private void finish() throws IOException {
+				if (finished) return;
+				finished = true;
+				out.close();
+
+				// A truncated body is retried by the caller, only complete files are kept
+				if (contentLength >= 0 && count != contentLength) {
+					Files.deleteIfExists(file);
+					return;
+				}
+
+				Path previous = recorded.put(url.toString(), file);
+
+				if (previous != null) {
+					Files.deleteIfExists(previous);
+				}
+			}
+
+			@Override
+			public void close() throws IOException {
+				try {
+					super.close();
+				} finally {
+					if (!finished) {
+						finished = true;
+						out.close();
+						Files.deleteIfExists(file);
+					}
+				}
+			}
+		}
+	}
+}
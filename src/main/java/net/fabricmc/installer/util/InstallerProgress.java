@@ -23,6 +23,14 @@ public interface InstallerProgress {
 			System.out.println(text);
 		}
 
+		@Override
+		public void updateDownloadProgress(DownloadProgress progress) {
+			// Only the completion, periodic updates would flood logs
+			if (progress.done) {
+				System.out.println(progress);
+			}
+		}
+
 		@Override
 		public void error(Throwable throwable) {
 			throw new RuntimeException(throwable);
@@ -31,5 +39,12 @@ public interface InstallerProgress {
 
 	void updateProgress(String text);
 
+	/**
+	 * Called from the downloading thread, at most once per {@link DownloadProgress#interval} milliseconds for each
+	 * download.
+	 */
+	default void updateDownloadProgress(DownloadProgress progress) {
+	}
+
 	void error(Throwable throwable);
 }
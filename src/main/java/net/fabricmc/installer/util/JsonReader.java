@@ -0,0 +1,369 @@
+/*
+ * Copyright (c) 2016, 2017, 2018, 2019 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.installer.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A minimal pull parser for reading a few fields out of large json documents, such as the version manifest, without
+ * building a tree of the whole document. Values that aren't needed are skipped without being stored.
+ *
+ * <p>Typical use reads an object with {@link #beginObject()}, then {@link #nextName()} and one of the value methods
+ * while {@link #hasNext()}, calling {@link #skipValue()} for anything else, and finally {@link #endObject()}.
+ */
+public final class JsonReader implements Closeable {
+	public enum Token {
+		BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT
+	}
+
+	private final Reader reader;
+	private final char[] buffer = new char[8192];
+	private int pos;
+	private int limit;
+	private long offset;
+
+	// Whether the next token in the current object is a name
+	private boolean expectName;
+	// Open containers, true for objects
+	private boolean[] stack = new boolean[32];
+	private int depth;
+	private Token peeked;
+
+	public JsonReader(Reader reader) {
+		this.reader = reader;
+	}
+
+	public JsonReader(InputStream is) {
+		this(new InputStreamReader(is, StandardCharsets.UTF_8));
+	}
+
+	public Token peek() throws IOException {
+		if (peeked != null) {
+			return peeked;
+		}
+
+		int c = nextNonWhitespace();
+
+		if (depth > 0 && (c == ',' || c == ':')) {
+			c = nextNonWhitespace();
+		}
+
+		switch (c) {
+		case -1:
+			return peeked = Token.END_DOCUMENT;
+		case '{':
+			return peeked = Token.BEGIN_OBJECT;
+		case '}':
+			return peeked = Token.END_OBJECT;
+		case '[':
+			return peeked = Token.BEGIN_ARRAY;
+		case ']':
+			return peeked = Token.END_ARRAY;
+		case '"':
+			pos--;
+			return peeked = expectName ? Token.NAME : Token.STRING;
+		case 't':
+		case 'f':
+			pos--;
+			return peeked = Token.BOOLEAN;
+		case 'n':
+			pos--;
+			return peeked = Token.NULL;
+		default:
+			if (c == '-' || (c >= '0' && c <= '9')) {
+				pos--;
+				return peeked = Token.NUMBER;
+			}
+
+			throw syntaxError("Unexpected character '" + (char) c + "'");
+		}
+	}
+
+	public boolean hasNext() throws IOException {
+		Token token = peek();
+		return token != Token.END_OBJECT && token != Token.END_ARRAY && token != Token.END_DOCUMENT;
+	}
+
+	public void beginObject() throws IOException {
+		expect(Token.BEGIN_OBJECT);
+		push(true);
+	}
+
+	public void endObject() throws IOException {
+		expect(Token.END_OBJECT);
+		pop();
+	}
+
+	public void beginArray() throws IOException {
+		expect(Token.BEGIN_ARRAY);
+		push(false);
+	}
+
+	public void endArray() throws IOException {
+		expect(Token.END_ARRAY);
+		pop();
+	}
+
+	public String nextName() throws IOException {
+		expect(Token.NAME);
+		String name = readString();
+		expectName = false;
+		return name;
+	}
+
+	public String nextString() throws IOException {
+		expect(Token.STRING);
+		String value = readString();
+		valueRead();
+		return value;
+	}
+
+	public long nextLong() throws IOException {
+		expect(Token.NUMBER);
+		String value = readLiteral();
+
+		try {
+			long ret = Long.parseLong(value);
+			valueRead();
+			return ret;
+		} catch (NumberFormatException e) {
+			throw syntaxError("Expected a whole number but was " + value);
+		}
+	}
+
+	public boolean nextBoolean() throws IOException {
+		expect(Token.BOOLEAN);
+		String value = readLiteral();
+
+		if (!value.equals("true") && !value.equals("false")) {
+			throw syntaxError("Expected a boolean but was " + value);
+		}
+
+		valueRead();
+		return value.equals("true");
+	}
+
+	/**
+	 * Skips the next value, including everything nested in it.
+	 */
+	public void skipValue() throws IOException {
+		int skipDepth = 0;
+
+		do {
+			switch (peek()) {
+			case BEGIN_OBJECT:
+				beginObject();
+				skipDepth++;
+				break;
+			case BEGIN_ARRAY:
+				beginArray();
+				skipDepth++;
+				break;
+			case END_OBJECT:
+				endObject();
+				skipDepth--;
+				break;
+			case END_ARRAY:
+				endArray();
+				skipDepth--;
+				break;
+			case NAME:
+				nextName();
+				break;
+			case STRING:
+				skipString();
+				valueRead();
+				break;
+			case NUMBER:
+			case BOOLEAN:
+			case NULL:
+				peeked = null;
+				readLiteral();
+				valueRead();
+				break;
+			default:
+				throw syntaxError("Unexpected end of document");
+			}
+		} while (skipDepth > 0);
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+
+	private void expect(Token token) throws IOException {
+		Token actual = peek();
+
+		if (actual != token) {
+			throw syntaxError("Expected " + token + " but was " + actual);
+		}
+
+		peeked = null;
+	}
+
+	private void push(boolean object) {
+		if (depth == stack.length) {
+			boolean[] newStack = new boolean[depth * 2];
+			System.arraycopy(stack, 0, newStack, 0, depth);
+			stack = newStack;
+		}
+
+		stack[depth++] = object;
+		expectName = object;
+	}
+
+	private void pop() {
+		depth--;
+		valueRead();
+	}
+
+	// In an object the next token after a value is a name again
+	private void valueRead() {
+		expectName = depth > 0 && stack[depth - 1];
+	}
+
+	private String readString() throws IOException {
+		read(); // opening quote
+		StringBuilder sb = new StringBuilder();
+
+		while (true) {
+			int c = read();
+
+			if (c == '"') {
+				return sb.toString();
+			} else if (c == '\\') {
+				sb.append(readEscape());
+			} else if (c == -1) {
+				throw syntaxError("Unterminated string");
+			} else {
+				sb.append((char) c);
+			}
+		}
+	}
+
+	private void skipString() throws IOException {
+		peeked = null;
+		read(); // opening quote
+
+		while (true) {
+			int c = read();
+
+			if (c == '"') {
+				return;
+			} else if (c == '\\') {
+				readEscape();
+			} else if (c == -1) {
+				throw syntaxError("Unterminated string");
+			}
+		}
+	}
+
+	private char readEscape() throws IOException {
+		int c = read();
+
+		switch (c) {
+		case '"':
+		case '\\':
+		case '/':
+			return (char) c;
+		case 'b':
+			return '\b';
+		case 'f':
+			return '\f';
+		case 'n':
+			return '\n';
+		case 'r':
+			return '\r';
+		case 't':
+			return '\t';
+		case 'u':
+			int value = 0;
+
+			for (int i = 0; i < 4; i++) {
+				int digit = Character.digit(read(), 16);
+				if (digit < 0) throw syntaxError("Invalid unicode escape");
+				value = (value << 4) | digit;
+			}
+
+			return (char) value;
+		default:
+			throw syntaxError("Invalid escape sequence");
+		}
+	}
+
+	// Numbers and the true, false and null literals
+	private String readLiteral() throws IOException {
+		StringBuilder sb = new StringBuilder();
+
+		while (true) {
+			if (pos == limit && !fill()) break;
+
+			char c = buffer[pos];
+
+			if (c == ',' || c == '}' || c == ']' || c == ':' || Character.isWhitespace(c)) {
+				break;
+			}
+
+			sb.append(c);
+			pos++;
+		}
+
+		return sb.toString();
+	}
+
+	private int nextNonWhitespace() throws IOException {
+		int c;
+
+		do {
+			c = read();
+		} while (c == ' ' || c == '\t' || c == '\n' || c == '\r');
+
+		return c;
+	}
+
+	private int read() throws IOException {
+		if (pos == limit && !fill()) {
+			return -1;
+		}
+
+		return buffer[pos++];
+	}
+
+	private boolean fill() throws IOException {
+		offset += limit;
+		pos = 0;
+		limit = 0;
+		int len = reader.read(buffer, 0, buffer.length);
+
+		if (len <= 0) {
+			return false;
+		}
+
+		limit = len;
+		return true;
+	}
+
+	private IOException syntaxError(String message) {
+		return new IOException(message + " at character " + (offset + pos));
+	}
+}
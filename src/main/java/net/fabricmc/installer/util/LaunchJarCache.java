@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2016, 2017, 2018, 2019 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.installer.util;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipError;
+
+/**
+ * Host level store of generated server launch jars.
+ *
+ * <p>A launch jar carries the fingerprint of everything it was generated from in its manifest, the store keeps jars
+ * under that fingerprint so server directories with the same loader, game version and libraries share one jar. Only
+ * the {@link #maxEntries} most recently used jars are kept.
+ *
+ * <p>Restored jars are hard links to the stored one, so its modification time must not change. When a jar was last used
+ * is tracked by the modification time of an empty file next to it instead.
+ */
+public class LaunchJarCache {
+	public static final Attributes.Name FINGERPRINT_ATTRIBUTE = new Attributes.Name("Fabric-Launch-Jar-Fingerprint");
+
+	public static boolean enabled = !Boolean.getBoolean("fabric.installer.noCache");
+	public static int maxEntries = Integer.getInteger("fabric.installer.launchJarCacheEntries", 16);
+
+	private static Path getDir() {
+		return Utils.cacheDir.resolve("launch-jars");
+	}
+
+	/**
+	 * @return the fingerprint stored in the jar's manifest, or null if it has none or can't be read
+	 */
+	public static String readFingerprint(Path jar) {
+		if (!Files.isRegularFile(jar)) {
+			return null;
+		}
+
+		try (JarFile jarFile = new JarFile(jar.toFile())) {
+			Manifest manifest = jarFile.getManifest();
+			return manifest == null ? null : manifest.getMainAttributes().getValue(FINGERPRINT_ATTRIBUTE);
+		} catch (IOException | ZipError e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Makes sure the target is the launch jar with the given fingerprint, either because it already is or by taking
+	 * it from the store.
+	 *
+	 * @return false if the jar has to be generated
+	 */
+	public static boolean restore(Path target, String fingerprint) throws IOException {
+		if (fingerprint.equals(readFingerprint(target))) {
+			return true;
+		}
+
+		if (!enabled) {
+			return false;
+		}
+
+		Path stored = getDir().resolve(fingerprint + ".jar");
+
+		if (!fingerprint.equals(readFingerprint(stored))) {
+			return false;
+		}
+
+		Files.createDirectories(target.getParent());
+		Files.deleteIfExists(target);
+
+		try {
+			Files.createLink(target, stored);
+		} catch (NoSuchFileException e) {
+			return false; // evicted in the meantime
+		} catch (IOException | UnsupportedOperationException e) {
+			// Different file system or no hardlink support
+			try {
+				Files.copy(stored, target, StandardCopyOption.REPLACE_EXISTING);
+			} catch (NoSuchFileException e2) {
+				return false;
+			}
+		}
+
+		markUsed(stored);
+		return true;
+	}
+
+	/**
+	 * Adds a freshly generated launch jar to the store, failures are only logged.
+	 */
+	public static void store(Path jar, String fingerprint) {
+		if (!enabled) return;
+
+		try {
+			Path dir = Files.createDirectories(getDir());
+			Path stored = dir.resolve(fingerprint + ".jar");
+			Path tmp = Files.createTempFile(dir, fingerprint, ".tmp");
+
+			try {
+				Files.copy(jar, tmp, StandardCopyOption.REPLACE_EXISTING);
+				Files.move(tmp, stored, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} finally {
+				Files.deleteIfExists(tmp);
+			}
+
+			markUsed(stored);
+
+			evict(dir);
+		} catch (IOException e) {
+			System.err.printf("Failed to store %s in the launch jar cache: %s%n", jar.getFileName(), e);
+		}
+	}
+
+	private static void evict(Path dir) throws IOException {
+		List<Path> jars;
+
+		try (Stream<Path> stream = Files.list(dir)) {
+			jars = stream.filter(path -> path.getFileName().toString().endsWith(".jar"))
+					.sorted(Comparator.comparing(LaunchJarCache::lastUsed).reversed())
+					.collect(Collectors.toList());
+		}
+
+		for (Path jar : jars.subList(Math.min(maxEntries, jars.size()), jars.size())) {
+			try {
+				Files.deleteIfExists(jar);
+				Files.deleteIfExists(getUsedFile(jar));
+			} catch (IOException e) {
+				// In use, removed next time
+			}
+		}
+	}
+
+	private static void markUsed(Path jar) {
+		try {
+			Files.write(getUsedFile(jar), new byte[0]);
+		} catch (IOException e) {
+			// Only used for eviction order
+		}
+	}
+
+	private static long lastUsed(Path jar) {
+		try {
+			Path used = getUsedFile(jar);
+			// Stored before the used files were added
+			return Files.getLastModifiedTime(Files.exists(used) ? used : jar).toMillis();
+		} catch (IOException e) {
+			return 0;
+		}
+	}
+
+	private static Path getUsedFile(Path jar) {
+		String name = jar.getFileName().toString();
+		return jar.resolveSibling(name.substring(0, name.length() - ".jar".length()) + ".used");
+	}
+}
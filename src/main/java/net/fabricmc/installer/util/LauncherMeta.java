@@ -19,74 +19,167 @@ package net.fabricmc.installer.util;
 import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
-import java.util.stream.Collectors;
-
-import mjson.Json;
+import java.util.Map;
 
 public class LauncherMeta {
-	private static LauncherMeta launcherMeta = null;
+	private static volatile LauncherMeta launcherMeta = null;
 
+	/**
+	 * Loads the manifests on first use, concurrent callers wait for the same load. A failed load is retried by the next
+	 * caller.
+	 */
 	public static LauncherMeta getLauncherMeta() throws IOException {
-		if (launcherMeta == null) {
-			launcherMeta = load();
+		LauncherMeta meta = launcherMeta;
+
+		if (meta == null) {
+			synchronized (LauncherMeta.class) {
+				meta = launcherMeta;
+
+				if (meta == null) {
+					meta = launcherMeta = load();
+				}
+			}
 		}
 
-		return launcherMeta;
+		return meta;
+	}
+
+	/**
+	 * Loads the manifests again, callers holding on to the previous instance keep using it. The manifests are still read
+	 * through the metadata cache.
+	 */
+	public static LauncherMeta refresh() throws IOException {
+		synchronized (LauncherMeta.class) {
+			return launcherMeta = load();
+		}
+	}
+
+	/**
+	 * Forgets the loaded manifests, the next caller loads them again.
+	 */
+	public static void clear() {
+		synchronized (LauncherMeta.class) {
+			launcherMeta = null;
+		}
 	}
 
 	private static LauncherMeta load() throws IOException {
+		List<List<Version>> manifests;
+
+		try (ParallelDownloader downloader = new ParallelDownloader(2)) {
+			manifests = ParallelDownloader.awaitAll(Arrays.asList(
+					downloader.submit(() -> getVersionsFromUrl(Reference.minecraftLauncherManifest)),
+					downloader.submit(() -> getVersionsFromUrl(Reference.experimentalVersionsManifest))));
+		}
+
 		List<Version> versions = new ArrayList<>();
-		versions.addAll(getVersionsFromUrl(Reference.minecraftLauncherManifest));
-		versions.addAll(getVersionsFromUrl(Reference.experimentalVersionsManifest));
+		manifests.forEach(versions::addAll);
 
 		return new LauncherMeta(versions);
 	}
 
+	// Streamed, only the id and url of each version are kept from the ever growing manifest
 	private static List<Version> getVersionsFromUrl(String urlStr) throws IOException {
-		URL url = new URL(urlStr);
+		List<Version> versions = new ArrayList<>();
+
+		try (JsonReader reader = new JsonReader(Utils.openMetadataStream(new URL(urlStr)))) {
+			reader.beginObject();
 
-		String str = Utils.readTextFile(url);
-		Json json = Json.read(str);
+			while (reader.hasNext()) {
+				if (!reader.nextName().equals("versions")) {
+					reader.skipValue();
+					continue;
+				}
 
-		List<Version> versions = json.at("versions").asJsonList()
-				.stream()
-				.map(Version::new)
-				.collect(Collectors.toList());
+				reader.beginArray();
+
+				while (reader.hasNext()) {
+					versions.add(Version.read(reader));
+				}
+
+				reader.endArray();
+			}
+
+			reader.endObject();
+		}
 
 		return versions;
 	}
 
 	public final List<Version> versions;
+	private final Map<String, Version> versionsById = new HashMap<>();
 
 	public LauncherMeta(List<Version> versions) {
 		this.versions = versions;
+
+		for (Version version : versions) {
+			// The release manifest comes first and wins
+			versionsById.putIfAbsent(version.id, version);
+		}
 	}
 
 	public static class Version {
 		public final String id;
 		public final String url;
 
-		private VersionMeta versionMeta = null;
+		private volatile VersionMeta versionMeta = null;
+
+		public Version(String id, String url) {
+			this.id = id;
+			this.url = url;
+		}
+
+		static Version read(JsonReader reader) throws IOException {
+			String id = null;
+			String url = null;
+
+			reader.beginObject();
+
+			while (reader.hasNext()) {
+				switch (reader.nextName()) {
+				case "id":
+					id = reader.nextString();
+					break;
+				case "url":
+					url = reader.nextString();
+					break;
+				default:
+					reader.skipValue();
+				}
+			}
+
+			reader.endObject();
+
+			if (id == null || url == null) {
+				throw new IOException("Version without an id or url in the launcher manifest");
+			}
 
-		public Version(Json json) {
-			this.id = json.at("id").asString();
-			this.url = json.at("url").asString();
+			return new Version(id, url);
 		}
 
 		public VersionMeta getVersionMeta() throws IOException {
-			if (versionMeta == null) {
-				URL url = new URL(this.url);
-				String str = Utils.readTextFile(url);
-				Json json = Json.read(str);
-				versionMeta = new VersionMeta(json);
+			VersionMeta meta = versionMeta;
+
+			if (meta == null) {
+				synchronized (this) {
+					meta = versionMeta;
+
+					if (meta == null) {
+						try (JsonReader reader = new JsonReader(Utils.openMetadataStream(new URL(this.url)))) {
+							meta = versionMeta = VersionMeta.read(reader);
+						}
+					}
+				}
 			}
 
-			return versionMeta;
+			return meta;
 		}
 	}
 
 	public Version getVersion(String version) {
-		return versions.stream().filter(v -> v.id.equals(version)).findFirst().orElse(null);
+		return versionsById.get(version);
 	}
 }
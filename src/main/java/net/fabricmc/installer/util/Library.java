@@ -39,10 +39,13 @@ public class Library {
 	}
 
 	public String getURL() {
-		String path;
+		return url + getMavenPath();
+	}
+
+	// The path of the artifact within its maven repository
+	public String getMavenPath() {
 		String[] parts = this.name.split(":", 3);
-		path = parts[0].replace(".", "/") + "/" + parts[1] + "/" + parts[2] + "/" + parts[1] + "-" + parts[2] + ".jar";
-		return url + path;
+		return parts[0].replace(".", "/") + "/" + parts[1] + "/" + parts[2] + "/" + parts[1] + "-" + parts[2] + ".jar";
 	}
 
 	public String getPath() {
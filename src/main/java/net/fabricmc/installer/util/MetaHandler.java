@@ -17,54 +17,212 @@
 package net.fabricmc.installer.util;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 import mjson.Json;
 
 public class MetaHandler extends CompletableHandler<List<MetaHandler.GameVersion>> {
+	private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(ParallelDownloader.daemonThreadFactory("fabric-installer-meta"));
+
 	private final String metaUrl;
-	private List<GameVersion> versions;
+	// Lists that have been loaded or are being loaded by url, switching back to a game version doesn't load its loaders again
+	private final Map<String, CompletableFuture<List<GameVersion>>> loaded = new ConcurrentHashMap<>();
+	// Loads started through fetchAsync, they aren't cancelled with a superseded request
+	private final Set<CompletableFuture<List<GameVersion>>> shared = ConcurrentHashMap.newKeySet();
+	// Only the latest request completes the handler, older ones have been superseded
+	private CompletableFuture<List<GameVersion>> latest;
+	private CompletableFuture<List<GameVersion>> latestLoad;
+	private volatile List<GameVersion> versions;
 
 	public MetaHandler(String url) {
 		this.metaUrl = url;
 	}
 
 	public void load() throws IOException {
-		URL url = new URL(metaUrl);
+		ParallelDownloader.await(loadAsync());
+	}
 
-		Json json = Json.read(Utils.readTextFile(url));
+	public void load(String arg) throws IOException {
+		ParallelDownloader.await(loadAsync(arg));
+	}
 
-		this.versions = json.asJsonList()
-				.stream()
-				.map(GameVersion::new)
-				.collect(Collectors.toList());
+	public CompletableFuture<List<GameVersion>> loadAsync() {
+		return request(metaUrl);
+	}
 
-		complete(versions);
+	/**
+	 * Loads the list in the background, cancelling the previous request if it hasn't completed yet. The handler is
+	 * completed through the callback executor.
+	 */
+	public CompletableFuture<List<GameVersion>> loadAsync(String arg) {
+		return request(metaUrl + "/" + arg);
 	}
 
-	public void load(String arg) throws IOException {
-		URL url = new URL(metaUrl + "/" + arg);
+	/**
+	 * Loads the list without completing the handler or superseding other requests, for callers needing several lists
+	 * at once. Shares the loaded lists with the handler.
+	 */
+	public CompletableFuture<List<GameVersion>> fetchAsync() {
+		return share(get(metaUrl));
+	}
+
+	public CompletableFuture<List<GameVersion>> fetchAsync(String arg) {
+		return share(get(metaUrl + "/" + arg));
+	}
+
+	private CompletableFuture<List<GameVersion>> share(CompletableFuture<List<GameVersion>> future) {
+		shared.add(future);
+		future.whenComplete((versions, throwable) -> shared.remove(future));
+		return future;
+	}
+
+	/**
+	 * Forgets every loaded list, the next load fetches them again.
+	 */
+	public void invalidate() {
+		loaded.clear();
+	}
 
-		Json json = Json.read(Utils.readTextFile(url));
+	public void invalidate(String arg) {
+		loaded.remove(metaUrl + "/" + arg);
+	}
+
+	private synchronized CompletableFuture<List<GameVersion>> request(String url) {
+		if (latest != null) {
+			latest.cancel(false);
+		}
+
+		CompletableFuture<List<GameVersion>> result = new CompletableFuture<>();
+		latest = result;
+
+		CompletableFuture<List<GameVersion>> future = get(url);
+
+		if (latestLoad != null && latestLoad != future && !shared.contains(latestLoad)) {
+			// Nobody waits for it any more, stops the download and keeps its result from being memoised
+			latestLoad.cancel(true);
+		}
+
+		latestLoad = future;
+
+		if (!future.isDone()) {
+			// Stale while revalidate, the list from the last run is shown until the fresh one arrives
+			List<GameVersion> snapshot = readSnapshot(url);
+
+			if (snapshot != null) {
+				this.versions = snapshot;
+				complete(snapshot);
+			}
+		}
+
+		future.whenComplete((versions, throwable) -> {
+			synchronized (this) {
+				if (latest != result || result.isDone()) {
+					return;
+				}
+
+				// Completed while holding the lock, so a superseded request can't complete the handler after a newer one
+				if (throwable != null) {
+					result.completeExceptionally(throwable);
+				} else {
+					this.versions = versions;
+					complete(versions);
+					result.complete(versions);
+				}
+			}
+		});
 
-		this.versions = json.asJsonList()
+		return result;
+	}
+
+	private CompletableFuture<List<GameVersion>> get(String url) {
+		CompletableFuture<List<GameVersion>> future = loaded.computeIfAbsent(url, MetaHandler::submit);
+
+		// Failed loads are tried again by the next request
+		future.whenComplete((versions, throwable) -> {
+			if (throwable != null) loaded.remove(url, future);
+		});
+
+		return future;
+	}
+
+	// Unlike with supplyAsync, cancelling the returned future interrupts the fetch
+	private static CompletableFuture<List<GameVersion>> submit(String url) {
+		CompletableFuture<List<GameVersion>> future = new CompletableFuture<>();
+		Future<?> task = EXECUTOR.submit(() -> {
+			try {
+				future.complete(fetch(url));
+			} catch (IOException e) {
+				future.completeExceptionally(new UncheckedIOException(e));
+			} catch (RuntimeException e) {
+				future.completeExceptionally(e);
+			}
+		});
+
+		future.whenComplete((versions, throwable) -> {
+			if (future.isCancelled()) task.cancel(true);
+		});
+
+		return future;
+	}
+
+	private static List<GameVersion> fetch(String url) throws IOException {
+		return Collections.unmodifiableList(parse(Utils.readTextFile(new URL(url))));
+	}
+
+	// The last list that was fetched successfully, regardless of its age
+	private static List<GameVersion> readSnapshot(String url) {
+		if (!MetadataCache.enabled) {
+			return null;
+		}
+
+		try {
+			byte[] body = MetadataCache.get().readCached(new URL(url));
+			return body != null ? new Snapshot(parse(new String(body, StandardCharsets.UTF_8))) : null;
+		} catch (IOException | RuntimeException e) {
+			return null;
+		}
+	}
+
+	private static List<GameVersion> parse(String str) {
+		return Json.read(str).asJsonList()
 				.stream()
 				.map(GameVersion::new)
 				.collect(Collectors.toList());
+	}
 
-		complete(versions);
+	/**
+	 * Whether the list was read from the last run's metadata instead of being fetched, a fresh list follows it.
+	 */
+	public static boolean isSnapshot(List<GameVersion> versions) {
+		return versions instanceof Snapshot;
 	}
 
 	public List<GameVersion> getVersions() {
-		return Collections.unmodifiableList(versions);
+		return versions;
 	}
 
 	public GameVersion getLatestVersion(boolean snapshot) {
 		if (versions.isEmpty()) throw new RuntimeException("no versions available at "+metaUrl);
 
+		return getLatestVersion(versions, snapshot);
+	}
+
+	public static GameVersion getLatestVersion(List<GameVersion> versions, boolean snapshot) {
+		if (versions.isEmpty()) throw new RuntimeException("no versions available");
+
 		if (!snapshot) {
 			for (GameVersion version : versions) {
 				if (version.isStable()) return version;
@@ -76,6 +234,24 @@ public class MetaHandler extends CompletableHandler<List<MetaHandler.GameVersion
 		return versions.get(0);
 	}
 
+	private static final class Snapshot extends AbstractList<GameVersion> {
+		private final List<GameVersion> versions;
+
+		Snapshot(List<GameVersion> versions) {
+			this.versions = versions;
+		}
+
+		@Override
+		public GameVersion get(int index) {
+			return versions.get(index);
+		}
+
+		@Override
+		public int size() {
+			return versions.size();
+		}
+	}
+
 	public static class GameVersion {
 		String version;
 		boolean stable = true;
@@ -0,0 +1,274 @@
+/*
+ * Copyright (c) 2016, 2017, 2018, 2019 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.installer.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches small metadata documents (version manifests, loader json, checksums) on disk.
+ *
+ * <p>Entries younger than {@link #ttl} seconds are used as is, older ones are revalidated with the server using the
+ * stored ETag and Last-Modified headers. The modification time of the cache file records when it was last validated.
+ * In {@link #offline} mode the network is never used and a missing entry is an error.
+ */
+public class MetadataCache {
+	private static final String FORMAT = "fabric-installer-meta-1";
+
+	public static boolean enabled = !Boolean.getBoolean("fabric.installer.noCache");
+	public static boolean offline = Boolean.getBoolean("fabric.installer.offline");
+	public static long ttl = Long.getLong("fabric.installer.metaTtl", 600);
+
+	private final Path dir;
+
+	public MetadataCache(Path dir) {
+		this.dir = dir;
+	}
+
+	public static MetadataCache get() {
+		return new MetadataCache(Utils.cacheDir.resolve("meta"));
+	}
+
+	public static boolean isCacheable(URL url) {
+		return url.getProtocol().equals("http") || url.getProtocol().equals("https");
+	}
+
+	/**
+	 * Returns the cached copy no matter how old it is without using the network, or null if there is none.
+	 */
+	public byte[] readCached(URL url) {
+		Path file = getFile(url);
+
+		if (Entry.read(file, url) == null) {
+			return null;
+		}
+
+		try (InputStream is = Entry.openBody(file, url)) {
+			return readAll(is);
+		} catch (IOException e) {
+			System.err.printf("Ignoring unreadable metadata cache entry %s: %s%n", file, e);
+			return null;
+		}
+	}
+
+	public byte[] read(URL url) throws IOException {
+		try (InputStream is = open(url)) {
+			return readAll(is);
+		}
+	}
+
+	/**
+	 * Like {@link #read(URL)}, but streams the body from the cache file instead of loading it into memory.
+	 */
+	public InputStream open(URL url) throws IOException {
+		Path file = getFile(url);
+		Entry entry = Entry.read(file, url);
+
+		if (entry != null && (offline || isFresh(file))) {
+			return Entry.openBody(file, url);
+		}
+
+		if (offline) {
+			throw new IOException("No cached copy of " + url + " is available in offline mode");
+		}
+
+		Map<String, String> headers = new HashMap<>();
+
+		if (entry != null) {
+			if (!entry.etag.isEmpty()) headers.put("If-None-Match", entry.etag);
+			if (!entry.lastModified.isEmpty()) headers.put("If-Modified-Since", entry.lastModified);
+		}
+
+		HttpTransport.Response response;
+
+		try {
+			response = HttpTransport.get().get(url, headers);
+		} catch (IOException e) {
+			if (entry == null) throw e;
+
+			System.err.printf("Failed to revalidate %s (%s), using the cached copy%n", url, e);
+			return Entry.openBody(file, url);
+		}
+
+		try {
+			int statusCode = response.getStatusCode();
+
+			if (statusCode == HttpTransport.HTTP_NOT_MODIFIED && entry != null) {
+				touch(file);
+				return Entry.openBody(file, url);
+			} else if (!response.isSuccess() && entry != null && statusCode != HttpTransport.HTTP_NOT_FOUND && statusCode != HttpTransport.HTTP_GONE) {
+				System.err.printf("Server returned %d for %s, using the cached copy%n", statusCode, url);
+				return Entry.openBody(file, url);
+			}
+
+			response.checkSuccess();
+
+			return store(file, new Entry(url.toString(), headerOrEmpty(response, "ETag"), headerOrEmpty(response, "Last-Modified")), response);
+		} finally {
+			response.close();
+		}
+	}
+
+	// Writes the body to the cache file while it is downloaded, then reads it back from there
+	private static InputStream store(Path file, Entry entry, HttpTransport.Response response) throws IOException {
+		Path tmp;
+
+		try {
+			Files.createDirectories(file.getParent());
+			tmp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+		} catch (IOException e) {
+			System.err.printf("Failed to cache %s: %s%n", entry.url, e);
+
+			try (InputStream is = response.getBody()) {
+				return new ByteArrayInputStream(readAll(is));
+			}
+		}
+
+		try {
+			try (InputStream is = response.getBody(); DataOutputStream os = new DataOutputStream(Files.newOutputStream(tmp))) {
+				entry.writeHeader(os);
+				byte[] buffer = new byte[8192];
+				int len;
+
+				while ((len = is.read(buffer)) >= 0) {
+					os.write(buffer, 0, len);
+				}
+			}
+
+			try {
+				Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (IOException e) {
+				// The cache file may be open for reading on windows, the downloaded copy is still used this time
+				System.err.printf("Failed to cache %s: %s%n", entry.url, e);
+
+				try (InputStream is = Entry.openBody(tmp, new URL(entry.url))) {
+					return new ByteArrayInputStream(readAll(is));
+				}
+			}
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+
+		return Entry.openBody(file, new URL(entry.url));
+	}
+
+	private Path getFile(URL url) {
+		return dir.resolve(Utils.sha1String(url.toString()) + ".bin");
+	}
+
+	private static boolean isFresh(Path file) {
+		try {
+			long age = System.currentTimeMillis() - Files.getLastModifiedTime(file).toMillis();
+			return age >= 0 && age < TimeUnit.SECONDS.toMillis(ttl);
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	private static void touch(Path file) {
+		try {
+			Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+		} catch (IOException e) {
+			// Will be revalidated again next time
+		}
+	}
+
+	private static String headerOrEmpty(HttpTransport.Response response, String name) {
+		String value = response.getHeader(name);
+		return value == null ? "" : value;
+	}
+
+	private static byte[] readAll(InputStream is) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(8192, is.available()));
+		byte[] buffer = new byte[8192];
+		int len;
+
+		while ((len = is.read(buffer)) >= 0) {
+			out.write(buffer, 0, len);
+		}
+
+		return out.toByteArray();
+	}
+
+	private static final class Entry {
+		final String url;
+		final String etag;
+		final String lastModified;
+
+		Entry(String url, String etag, String lastModified) {
+			this.url = url;
+			this.etag = etag;
+			this.lastModified = lastModified;
+		}
+
+		// Reads only the header, the body is streamed with openBody
+		static Entry read(Path file, URL url) {
+			try (DataInputStream is = new DataInputStream(Files.newInputStream(file))) {
+				return readHeader(is, url);
+			} catch (NoSuchFileException e) {
+				return null;
+			} catch (IOException e) {
+				System.err.printf("Ignoring unreadable metadata cache entry %s: %s%n", file, e);
+				return null;
+			}
+		}
+
+		// Returns the file positioned at the start of the body
+		static InputStream openBody(Path file, URL url) throws IOException {
+			DataInputStream is = new DataInputStream(Files.newInputStream(file));
+
+			try {
+				if (readHeader(is, url) == null) {
+					throw new IOException("Metadata cache entry " + file + " doesn't belong to " + url);
+				}
+
+				return is;
+			} catch (IOException | RuntimeException e) {
+				is.close();
+				throw e;
+			}
+		}
+
+		private static Entry readHeader(DataInputStream is, URL url) throws IOException {
+			if (!FORMAT.equals(is.readUTF())) return null;
+
+			Entry entry = new Entry(is.readUTF(), is.readUTF(), is.readUTF());
+			// Guard against hash collisions
+			return entry.url.equals(url.toString()) ? entry : null;
+		}
+
+		void writeHeader(DataOutputStream os) throws IOException {
+			os.writeUTF(FORMAT);
+			os.writeUTF(url);
+			os.writeUTF(etag);
+			os.writeUTF(lastModified);
+		}
+	}
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2016, 2017, 2018, 2019 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.installer.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Alternative servers for maven repositories.
+ *
+ * <p>Mirrors are configured per repository as {@code <repository>=<mirror>,<mirror>;<repository>=...}, using
+ * {@code -mirrors} or the {@code fabric.installer.mirrors} system property. The first time a repository with mirrors
+ * is used every server is probed and they are tried fastest first from then on, moving on to the next one on errors or
+ * checksum mismatches. With {@link #race} downloads are started on the two fastest servers at once, the one answering
+ * first is used.
+ */
+public class Mirrors {
+	public static boolean race = Boolean.getBoolean("fabric.installer.raceMirrors");
+
+	private static final Map<String, List<String>> MIRRORS = new ConcurrentHashMap<>();
+	private static final Map<String, CompletableFuture<List<String>>> RANKINGS = new ConcurrentHashMap<>();
+	private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(ParallelDownloader.daemonThreadFactory("fabric-installer-mirrors"));
+
+	static {
+		String mirrors = System.getProperty("fabric.installer.mirrors");
+
+		if (mirrors != null) {
+			parse(mirrors);
+		}
+	}
+
+	public static void parse(String spec) {
+		for (String entry : spec.split(";")) {
+			if (entry.trim().isEmpty()) continue;
+
+			int pos = entry.indexOf('=');
+
+			if (pos < 0) {
+				throw new IllegalArgumentException("Invalid mirror definition, expected <repository>=<mirror>[,<mirror>...]: " + entry);
+			}
+
+			add(entry.substring(0, pos).trim(), Arrays.asList(entry.substring(pos + 1).split(",")));
+		}
+	}
+
+	public static void add(String repository, List<String> mirrors) {
+		List<String> list = MIRRORS.computeIfAbsent(normalize(repository), k -> Collections.synchronizedList(new ArrayList<>()));
+
+		for (String mirror : mirrors) {
+			if (!mirror.trim().isEmpty()) list.add(normalize(mirror.trim()));
+		}
+
+		RANKINGS.remove(normalize(repository));
+	}
+
+	/**
+	 * Forgets every configured mirror and ranking.
+	 */
+	public static void clear() {
+		MIRRORS.clear();
+		RANKINGS.clear();
+	}
+
+	/**
+	 * Returns the servers to use for the repository, fastest first. Only probes if the repository has mirrors.
+	 *
+	 * @param probePath a file in the repository used to measure the latency
+	 */
+	public static List<String> getCandidates(String repository, String probePath) throws IOException {
+		List<String> mirrors = MIRRORS.get(normalize(repository));
+
+		if (mirrors == null || mirrors.isEmpty()) {
+			return Collections.singletonList(repository);
+		}
+
+		CompletableFuture<List<String>> ranking = RANKINGS.computeIfAbsent(normalize(repository), k -> {
+			List<String> candidates = new ArrayList<>();
+			candidates.add(repository);
+			candidates.addAll(mirrors);
+			return CompletableFuture.supplyAsync(() -> rank(candidates, probePath), EXECUTOR);
+		});
+
+		try {
+			return ranking.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while probing mirrors", e);
+		} catch (ExecutionException e) {
+			throw ParallelDownloader.unwrap(e);
+		}
+	}
+
+	public static String readTextFile(String repository, String path) throws IOException {
+		IOException failure = null;
+
+		for (String candidate : getCandidates(repository, path)) {
+			try {
+				return Utils.readTextFile(new URL(candidate + path));
+			} catch (IOException e) {
+				failure = addFailure(failure, e, candidate + path);
+			}
+		}
+
+		throw failure;
+	}
+
+	public static String downloadFile(String repository, String path, Path target, long expectedSize, String expectedSha1, DownloadProgress.Listener progress) throws IOException {
+		List<String> candidates = getCandidates(repository, path);
+		IOException failure = null;
+
+		if (race && candidates.size() > 1) {
+			List<URL> urls = Arrays.asList(new URL(candidates.get(0) + path), new URL(candidates.get(1) + path));
+
+			try {
+				return Utils.downloadFile(headers -> openFirst(urls, headers), target, expectedSize, expectedSha1, progress);
+			} catch (IOException e) {
+				// Try them one after another
+				failure = addFailure(null, e, urls.toString());
+			}
+		}
+
+		for (String candidate : candidates) {
+			try {
+				return Utils.downloadFile(new URL(candidate + path), target, expectedSize, expectedSha1, progress);
+			} catch (IOException e) {
+				failure = addFailure(failure, e, candidate + path);
+			}
+		}
+
+		throw failure;
+	}
+
+	private static IOException addFailure(IOException failure, IOException e, String url) {
+		System.err.printf("Failed to fetch %s: %s%n", url, e);
+
+		if (failure == null) {
+			return e;
+		}
+
+		failure.addSuppressed(e);
+		return failure;
+	}
+
+	private static List<String> rank(List<String> candidates, String probePath) {
+		Map<String, CompletableFuture<Long>> latencies = new HashMap<>();
+
+		for (String candidate : candidates) {
+			latencies.put(candidate, CompletableFuture.supplyAsync(() -> probe(candidate + probePath), EXECUTOR));
+		}
+
+		Map<String, Long> results = new HashMap<>();
+		latencies.forEach((candidate, future) -> results.put(candidate, future.join()));
+
+		// Stable sort, unreachable servers keep their configured order at the end
+		return candidates.stream()
+				.sorted(Comparator.comparingLong(results::get))
+				.collect(Collectors.toList());
+	}
+
+	// Time to the first byte of the response, Long.MAX_VALUE if the server is unusable
+	private static long probe(String url) {
+		long start = System.nanoTime();
+
+		try (HttpTransport.Response response = HttpTransport.get().get(new URL(url), Collections.singletonMap("Range", "bytes=0-0"))) {
+			if (!response.isSuccess()) {
+				return Long.MAX_VALUE;
+			}
+
+			return (System.nanoTime() - start) / 1_000_000;
+		} catch (IOException e) {
+			return Long.MAX_VALUE;
+		}
+	}
+
+	// Sends the request to all urls at once and returns the first usable response, the others are closed
+	private static HttpTransport.Response openFirst(List<URL> urls, Map<String, String> headers) throws IOException {
+		CompletableFuture<HttpTransport.Response> winner = new CompletableFuture<>();
+		AtomicInteger settled = new AtomicInteger();
+
+		for (URL url : urls) {
+			CompletableFuture.supplyAsync(() -> {
+				try {
+					return HttpTransport.get().get(url, headers);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}, EXECUTOR).whenComplete((response, error) -> {
+				boolean usable = response != null && (response.isSuccess() || response.getStatusCode() == HttpTransport.HTTP_RANGE_NOT_SATISFIABLE);
+
+				if (usable && winner.complete(response)) {
+					return;
+				}
+
+				if (settled.incrementAndGet() < urls.size()) {
+					// Lost the race or not usable
+					closeQuietly(response);
+				} else if (response == null) {
+					winner.completeExceptionally(error);
+				} else if (!winner.complete(response)) {
+					closeQuietly(response);
+				}
+
+				// Otherwise nothing was usable, the last response is returned so the caller can report its error
+			});
+		}
+
+		try {
+			return winner.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for mirrors", e);
+		} catch (ExecutionException e) {
+			throw ParallelDownloader.unwrap(e);
+		}
+	}
+
+	private static void closeQuietly(HttpTransport.Response response) {
+		if (response == null) return;
+
+		try {
+			response.close();
+		} catch (IOException e) {
+			// ignored
+		}
+	}
+
+	private static String normalize(String repository) {
+		return repository.endsWith("/") ? repository : repository + "/";
+	}
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2016, 2017, 2018, 2019 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.installer.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs downloads on a bounded pool of worker threads.
+ *
+ * <p>Every submitted task gets its own future, {@link #awaitAll(List)} collects the results in submission order so
+ * callers get a deterministic result no matter which download finishes first.
+ */
+public class ParallelDownloader implements AutoCloseable {
+	public static int defaultThreads = Integer.getInteger("fabric.installer.downloadThreads", 6);
+
+	private static final AtomicInteger POOL_ID = new AtomicInteger();
+
+	private final ExecutorService executor;
+
+	public ParallelDownloader() {
+		this(defaultThreads);
+	}
+
+	public ParallelDownloader(int threads) {
+		if (threads < 1) throw new IllegalArgumentException("threads must be at least 1, got " + threads);
+
+		this.executor = Executors.newFixedThreadPool(threads, daemonThreadFactory("fabric-installer-download-" + POOL_ID.incrementAndGet()));
+	}
+
+	public <T> CompletableFuture<T> submit(IOCallable<T> task) {
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return task.call();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}, executor);
+	}
+
+	/**
+	 * Waits for all the futures to complete, returning their results in the same order as the futures were passed in.
+	 *
+	 * <p>After the first failure the remaining futures are cancelled, and the first failure is rethrown with any other
+	 * failure that has already happened added as suppressed. Cancelling doesn't stop tasks that are already running,
+	 * they keep going in the background until the downloader is closed, which interrupts them without waiting.
+	 */
+	public static <T> List<T> awaitAll(List<CompletableFuture<T>> futures) throws IOException {
+		List<T> results = new ArrayList<>(futures.size());
+		Throwable failure = null;
+		CancellationException cancelled = null;
+
+		for (CompletableFuture<T> future : futures) {
+			try {
+				results.add(future.get());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				futures.forEach(f -> f.cancel(true));
+				throw new IOException("Interrupted while waiting for downloads", e);
+			} catch (CancellationException e) {
+				// Most likely cancelled below because of an earlier failure, that failure is what gets thrown
+				if (cancelled == null) cancelled = e;
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause() instanceof UncheckedIOException ? e.getCause().getCause() : e.getCause();
+
+				if (failure == null) {
+					failure = cause;
+					// Don't start anything that hasn't been picked up yet, the install has failed anyway
+					futures.forEach(f -> f.cancel(false));
+				} else {
+					failure.addSuppressed(cause);
+				}
+			}
+		}
+
+		if (failure != null) {
+			throw unwrap(failure);
+		} else if (cancelled != null) {
+			throw cancelled;
+		}
+
+		return results;
+	}
+
+	/**
+	 * Waits for all the futures to complete, unlike {@link #awaitAll(List)} the first failure is thrown right away and
+	 * the other futures are cancelled. Tasks that are already running are interrupted once the downloader is closed.
+	 */
+	public static void awaitAllFailFast(List<? extends CompletableFuture<?>> futures) throws IOException {
+		CompletableFuture<?>[] array = futures.toArray(new CompletableFuture<?>[0]);
+		CompletableFuture<Void> firstFailure = new CompletableFuture<>();
+
+		for (CompletableFuture<?> future : array) {
+			future.whenComplete((result, t) -> {
+				if (t != null) firstFailure.completeExceptionally(t);
+			});
+		}
+
+		try {
+			CompletableFuture.anyOf(CompletableFuture.allOf(array), firstFailure).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			futures.forEach(f -> f.cancel(true));
+			throw new IOException("Interrupted while waiting for a task", e);
+		} catch (ExecutionException | CancellationException e) {
+			futures.forEach(f -> f.cancel(true));
+			throw unwrap(e);
+		}
+	}
+
+	/**
+	 * Waits for a single future, used to consume results in order while later tasks are still running.
+	 */
+	public static <T> T await(CompletableFuture<T> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for a task", e);
+		} catch (ExecutionException | CancellationException e) {
+			throw unwrap(e);
+		}
+	}
+
+	public static IOException unwrap(Throwable t) {
+		while ((t instanceof ExecutionException || t instanceof CompletionException) && t.getCause() != null) {
+			t = t.getCause();
+		}
+
+		if (t instanceof UncheckedIOException) {
+			return ((UncheckedIOException) t).getCause();
+		} else if (t instanceof IOException) {
+			return (IOException) t;
+		} else if (t instanceof RuntimeException) {
+			throw (RuntimeException) t;
+		} else if (t instanceof Error) {
+			throw (Error) t;
+		}
+
+		return new IOException(t);
+	}
+
+	/**
+	 * Interrupts running tasks and drops queued ones, without waiting for running tasks to finish.
+	 */
+	@Override
+	public void close() {
+		executor.shutdownNow();
+	}
+
+	static ThreadFactory daemonThreadFactory(String name) {
+		AtomicInteger count = new AtomicInteger();
+
+		return r -> {
+			Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	@FunctionalInterface
+	public interface IOCallable<T> {
+		T call() throws IOException;
+	}
+}
@@ -19,6 +19,10 @@ package net.fabricmc.installer.util;
 public class Reference {
 	public static final String LOADER_NAME = "fabric-loader";
 
+	public static final String FABRIC_MAVEN = "https://maven.fabricmc.net/";
+	public static final String LEGACY_FABRIC_MAVEN = "https://maven.legacyfabric.net/";
+	public static final String MINECRAFT_LIBRARIES = "https://libraries.minecraft.net/";
+
 	public static String metaServerUrl = "https://meta.legacyfabric.net/";
 	public static String fabricApiUrl = "https://www.curseforge.com/minecraft/mc-mods/legacy-fabric-api/";
 	public static String minecraftLauncherManifest = "https://launchermeta.mojang.com/mc/game/version_manifest_v2.json";
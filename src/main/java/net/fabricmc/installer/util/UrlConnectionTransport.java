@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2016, 2017, 2018, 2019 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.installer.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.Map;
+
+/**
+ * Transport based on {@link HttpURLConnection}.
+ *
+ * <p>The JDK keeps idle connections alive per host as long as response bodies are read to the end and closed, so
+ * {@link Response#close()} drains what is left of small bodies. The number of idle connections kept per host is
+ * raised to match the download thread count unless {@code http.maxConnections} is set explicitly.
+ */
+public class UrlConnectionTransport extends HttpTransport {
+	public static int connectTimeout = Integer.getInteger("fabric.installer.connectTimeout", 15) * 1000;
+	public static int readTimeout = Integer.getInteger("fabric.installer.readTimeout", 30) * 1000;
+
+	private static final int DRAIN_LIMIT = 64 * 1024;
+
+	static {
+		// Read by the jdk once, when the first connection is kept alive. A value passed with -D is left alone
+		if (System.getProperty("http.maxConnections") == null) {
+			System.setProperty("http.maxConnections", Integer.toString(Math.max(5, ParallelDownloader.defaultThreads)));
+		}
+	}
+
+	private final String userAgent;
+
+	public UrlConnectionTransport() {
+		String version = UrlConnectionTransport.class.getPackage().getImplementationVersion();
+		this.userAgent = "LegacyFabricInstaller/" + (version != null ? version : "dev");
+	}
+
+	@Override
+	public Response get(URL url, Map<String, String> headers) throws IOException {
+		URLConnection connection = url.openConnection();
+		connection.setConnectTimeout(connectTimeout);
+		connection.setReadTimeout(readTimeout);
+		connection.setRequestProperty("User-Agent", userAgent);
+		headers.forEach(connection::setRequestProperty);
+
+		if (connection instanceof HttpURLConnection) {
+			// Forces the request to be sent, connection and read timeouts apply
+			((HttpURLConnection) connection).getResponseCode();
+		}
+
+		return new UrlConnectionResponse(url, connection);
+	}
+
+	private static final class UrlConnectionResponse extends Response {
+		private final URLConnection connection;
+		private InputStream stream;
+		private InputStream body;
+		private boolean closed;
+
+		UrlConnectionResponse(URL url, URLConnection connection) {
+			super(url);
+			this.connection = connection;
+		}
+
+		@Override
+		public int getStatusCode() {
+			if (!(connection instanceof HttpURLConnection)) {
+				return HTTP_OK; // file: and jar: urls
+			}
+
+			try {
+				return ((HttpURLConnection) connection).getResponseCode();
+			} catch (IOException e) {
+				// The response code is cached after the request in get(), this can't happen
+				throw new IllegalStateException(e);
+			}
+		}
+
+		@Override
+		public String getHeader(String name) {
+			return connection.getHeaderField(name);
+		}
+
+		@Override
+		public long getContentLength() {
+			return connection.getContentLengthLong();
+		}
+
+		@Override
+		public InputStream getBody() throws IOException {
+			if (body == null) {
+				body = new FilterInputStream(openStream()) {
+					@Override
+					public void close() throws IOException {
+						UrlConnectionResponse.this.close();
+					}
+				};
+			}
+
+			return body;
+		}
+
+		private InputStream openStream() throws IOException {
+			if (stream == null) {
+				if (isSuccess()) {
+					stream = connection.getInputStream();
+				} else {
+					stream = ((HttpURLConnection) connection).getErrorStream();
+				}
+
+				if (stream == null) {
+					stream = new ByteArrayInputStream(new byte[0]);
+				}
+			}
+
+			return stream;
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (closed) return;
+			closed = true;
+
+			// Read what is left of a small body so the connection goes back to the keep-alive pool
+			try (InputStream is = openStream()) {
+				byte[] buffer = new byte[8192];
+				long remaining = DRAIN_LIMIT;
+				int len;
+
+				while (remaining > 0 && (len = is.read(buffer)) >= 0) {
+					remaining -= len;
+				}
+			}
+		}
+	}
+}
@@ -17,9 +17,11 @@
 package net.fabricmc.installer.util;
 
 import java.io.BufferedReader;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
@@ -27,18 +29,23 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Locale;
+import java.util.Map;
 import java.util.PropertyResourceBundle;
 import java.util.ResourceBundle;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class Utils {
 	public static final DateFormat ISO_8601 = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ");
@@ -59,6 +66,9 @@ public class Utils {
 			return super.newBundle(baseName, locale, format, loader, reload);
 		}
 	});
+	public static Path cacheDir = findDefaultCacheDir();
+
+	private static final int DOWNLOAD_ATTEMPTS = 3;
 
 	public static Path findDefaultInstallDir() {
 		String os = System.getProperty("os.name").toLowerCase(Locale.ENGLISH);
@@ -80,11 +90,47 @@ public class Utils {
 		return dir.toAbsolutePath().normalize();
 	}
 
+	public static Path findDefaultCacheDir() {
+		String override = System.getProperty("fabric.installer.cacheDir");
+		if (override != null) return Paths.get(override).toAbsolutePath().normalize();
+
+		String os = System.getProperty("os.name").toLowerCase(Locale.ENGLISH);
+		Path homeDir = Paths.get(System.getProperty("user.home", "."));
+		Path dir;
+
+		if (os.contains("win") && System.getenv("LOCALAPPDATA") != null) {
+			dir = Paths.get(System.getenv("LOCALAPPDATA")).resolve("legacy-fabric-installer").resolve("cache");
+		} else if (os.contains("mac")) {
+			dir = homeDir.resolve("Library").resolve("Caches").resolve("legacy-fabric-installer");
+		} else if (System.getenv("XDG_CACHE_HOME") != null) {
+			dir = Paths.get(System.getenv("XDG_CACHE_HOME")).resolve("legacy-fabric-installer");
+		} else {
+			dir = homeDir.resolve(".cache").resolve("legacy-fabric-installer");
+		}
+
+		return dir.toAbsolutePath().normalize();
+	}
+
 	public static Reader urlReader(URL url) throws IOException {
-		return new InputStreamReader(url.openStream(), StandardCharsets.UTF_8);
+		return new InputStreamReader(HttpTransport.get().openStream(url), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Opens a metadata document through the metadata cache if possible, for reading it with a {@link JsonReader}.
+	 */
+	public static InputStream openMetadataStream(URL url) throws IOException {
+		if (MetadataCache.enabled && MetadataCache.isCacheable(url)) {
+			return MetadataCache.get().open(url);
+		}
+
+		return HttpTransport.get().openStream(url);
 	}
 
 	public static String readTextFile(URL url) throws IOException {
+		if (MetadataCache.enabled && MetadataCache.isCacheable(url)) {
+			return new String(MetadataCache.get().read(url), StandardCharsets.UTF_8);
+		}
+
 		try (BufferedReader reader = new BufferedReader(urlReader(url))) {
 			return reader.lines().collect(Collectors.joining("\n"));
 		}
@@ -118,19 +164,171 @@ public class Utils {
 		Files.write(path, string.getBytes(StandardCharsets.UTF_8));
 	}
 
-	public static void downloadFile(URL url, Path path) throws IOException {
+	public static String downloadFile(URL url, Path path) throws IOException {
+		return downloadFile(url, path, -1, null, null);
+	}
+
+	/**
+	 * Downloads a file, keeping the partial download in a .tmp file next to the target so a failed or interrupted
+	 * download can be continued with a range request the next time.
+	 *
+	 * @param expectedSize the expected size in bytes, or -1 if unknown
+	 * @param expectedSha1 the expected sha1 hash, or null if unknown
+	 * @param progress receives every chunk and a final update once the file is complete, may be null
+	 * @return the sha1 hash of the downloaded file, computed while downloading it
+	 */
+	public static String downloadFile(URL url, Path path, long expectedSize, String expectedSha1, DownloadProgress.Listener progress) throws IOException {
+		return downloadFile(headers -> HttpTransport.get().get(url, headers), path, expectedSize, expectedSha1, progress);
+	}
+
+	/**
+	 * Same as {@link #downloadFile(URL, Path, long, String, DownloadProgress.Listener)}, but each attempt sends its request through
+	 * the given opener, allowing it to pick the server to download from.
+	 */
+	public static String downloadFile(HttpTransport.Opener opener, Path path, long expectedSize, String expectedSha1, DownloadProgress.Listener progress) throws IOException {
 		Files.createDirectories(path.getParent());
+		Path tmp = path.resolveSibling(path.getFileName().toString() + ".tmp");
+		MessageDigest digest = sha1Digest();
+		IOException failure = null;
+
+		for (int attempt = 0; attempt < DOWNLOAD_ATTEMPTS; attempt++) {
+			boolean resumed;
 
-		try (InputStream in = url.openStream()) {
-			Files.copy(in, path, StandardCopyOption.REPLACE_EXISTING);
-		} catch (Throwable t) {
 			try {
-				Files.deleteIfExists(path);
-			} catch (Throwable t2) {
-				t.addSuppressed(t2);
+				resumed = transfer(opener, tmp, expectedSize, digest, progress);
+			} catch (FileNotFoundException e) {
+				throw e;
+			} catch (IOException e) {
+				if (failure == null) {
+					failure = e;
+				} else {
+					failure.addSuppressed(e);
+				}
+
+				continue;
+			}
+
+			String sha1 = bytesToHex(digest.digest());
+			String error = validateDownload(tmp, expectedSize, expectedSha1, sha1);
+
+			if (error == null) {
+				long size = Files.size(tmp);
+				Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+				VerificationIndex.record(path, sha1);
+				if (progress != null) progress.update(size, size);
+				return sha1;
+			}
+
+			// The partial file was either corrupt or belonged to a different version of the file, start from scratch
+			Files.deleteIfExists(tmp);
+			IOException e = new IOException(String.format("Failed to validate %s: %s", path.getFileName(), error));
+
+			if (!resumed) {
+				if (failure != null) e.addSuppressed(failure);
+				throw e;
+			}
+
+			if (failure == null) {
+				failure = e;
+			} else {
+				failure.addSuppressed(e);
+			}
+		}
+
+		throw failure;
+	}
+
+	// Returns true if an existing partial download was continued, the digest is updated with the full file contents
+	private static boolean transfer(HttpTransport.Opener opener, Path tmp, long expectedSize, MessageDigest digest, DownloadProgress.Listener progress) throws IOException {
+		digest.reset();
+		long existing = Files.exists(tmp) ? Files.size(tmp) : 0;
+
+		if (expectedSize >= 0 && existing > expectedSize) {
+			Files.delete(tmp);
+			existing = 0;
+		}
+
+		Map<String, String> headers = existing > 0 ? Collections.singletonMap("Range", "bytes=" + existing + "-") : Collections.emptyMap();
+
+		try (HttpTransport.Response response = opener.open(headers)) {
+			int statusCode = response.getStatusCode();
+
+			if (statusCode == HttpTransport.HTTP_RANGE_NOT_SATISFIABLE && existing > 0) {
+				if (expectedSize < 0 || expectedSize == existing) {
+					// already complete, validated by the caller
+					updateDigest(digest, tmp);
+					return true;
+				}
+
+				Files.delete(tmp);
+				throw new IOException("Server rejected resuming " + response.getUrl());
+			}
+
+			response.checkSuccess();
+
+			// Anything other than a partial response for the requested range is the whole file
+			String contentRange = response.getHeader("Content-Range");
+			boolean append = statusCode == HttpTransport.HTTP_PARTIAL && contentRange != null && contentRange.startsWith("bytes " + existing + "-");
+
+			if (append) {
+				// Only the part downloaded earlier has to be read back
+				updateDigest(digest, tmp);
+			} else {
+				existing = 0;
+			}
+
+			writeBody(response, tmp, append, existing, expectedSize, digest, progress);
+			return append;
+		}
+	}
+
+	private static void writeBody(HttpTransport.Response response, Path tmp, boolean append, long existing, long expectedSize, MessageDigest digest, DownloadProgress.Listener progress) throws IOException {
+		long contentLength = response.getContentLength();
+
+		try (InputStream in = response.getBody();
+				OutputStream out = Files.newOutputStream(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING)) {
+			byte[] buffer = new byte[64 * 1024];
+			long downloaded = existing;
+			long total = contentLength >= 0 ? existing + contentLength : expectedSize;
+			int len;
+
+			if (progress != null) progress.update(downloaded, total);
+
+			while ((len = in.read(buffer)) >= 0) {
+				out.write(buffer, 0, len);
+				digest.update(buffer, 0, len);
+				downloaded += len;
+
+				if (progress != null) progress.update(downloaded, total);
+			}
+
+			if ((contentLength >= 0 && downloaded - existing < contentLength) || (expectedSize >= 0 && downloaded < expectedSize)) {
+				// Keep what we got, the next attempt continues from here
+				throw new IOException(String.format("Connection closed early while downloading %s, got %d bytes", response.getUrl(), downloaded));
 			}
+		}
+	}
+
+	private static String validateDownload(Path file, long expectedSize, String expectedSha1, String sha1) throws IOException {
+		if (expectedSize >= 0 && Files.size(file) != expectedSize) {
+			return String.format("expected %d bytes but got %d", expectedSize, Files.size(file));
+		}
+
+		if (expectedSha1 != null && !sha1.equalsIgnoreCase(expectedSha1)) {
+			return String.format("expected sha1 %s but got %s", expectedSha1, sha1);
+		}
+
+		return null;
+	}
 
-			throw t;
+	public static void deleteDirectory(Path dir) throws IOException {
+		if (!Files.exists(dir)) return;
+
+		try (Stream<Path> stream = Files.walk(dir)) {
+			// Children before their parents
+			for (Path path : (Iterable<Path>) stream.sorted(Comparator.reverseOrder())::iterator) {
+				Files.delete(path);
+			}
 		}
 	}
 
@@ -157,9 +355,17 @@ public class Utils {
 		return bytesToHex(sha1(path));
 	}
 
+	public static String sha1String(String string) {
+		return bytesToHex(sha1Digest().digest(string.getBytes(StandardCharsets.UTF_8)));
+	}
+
 	public static byte[] sha1(Path path) throws IOException {
 		MessageDigest digest = sha1Digest();
+		updateDigest(digest, path);
+		return digest.digest();
+	}
 
+	private static void updateDigest(MessageDigest digest, Path path) throws IOException {
 		try (InputStream is = Files.newInputStream(path)) {
 			byte[] buffer = new byte[64 * 1024];
 			int len;
@@ -168,11 +374,9 @@ public class Utils {
 				digest.update(buffer, 0, len);
 			}
 		}
-
-		return digest.digest();
 	}
 
-	private static MessageDigest sha1Digest() {
+	static MessageDigest sha1Digest() {
 		try {
 			return MessageDigest.getInstance("SHA-1");
 		} catch (NoSuchAlgorithmException e) {
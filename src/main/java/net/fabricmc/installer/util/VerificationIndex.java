@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2016, 2017, 2018, 2019 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.installer.util;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the sha1 of files that have been verified before, along with their size and modification time. A file
+ * whose size and modification time haven't changed since is not hashed again, unless {@link #paranoid} is set.
+ *
+ * <p>The index is a single file in the cache directory, shared by all installs. New entries are appended to it, later
+ * lines replace earlier ones for the same path, and the file is rewritten once it has grown to twice the entry limit.
+ * Losing an update to another installer only means the file is hashed again.
+ */
+public final class VerificationIndex {
+	public static boolean paranoid = Boolean.getBoolean("fabric.installer.paranoid");
+	public static int maxEntries = Integer.getInteger("fabric.installer.verificationIndexEntries", 4096);
+
+	private static final Object LOCK = new Object();
+	// Least recently recorded first
+	private static Map<String, Entry> entries;
+	private static Path loadedFrom;
+	// Lines in the index file, including replaced entries
+	private static int lines;
+
+	private VerificationIndex() {
+	}
+
+	/**
+	 * Returns the sha1 of the file, from the index if the file is unchanged since it was last hashed.
+	 */
+	public static String sha1(Path file) throws IOException {
+		Path path = file.toAbsolutePath().normalize();
+		// Read before hashing, a change while hashing then shows up as a different modification time next time
+		BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+
+		if (!paranoid) {
+			synchronized (LOCK) {
+				Entry entry = getEntries().get(path.toString());
+
+				if (entry != null && entry.matches(attributes)) {
+					return entry.sha1;
+				}
+			}
+		}
+
+		String sha1 = Utils.sha1String(path);
+		put(path, attributes, sha1);
+		return sha1;
+	}
+
+	/**
+	 * Records the sha1 of a file that has just been written and verified, such as a completed download.
+	 */
+	public static void record(Path file, String sha1) throws IOException {
+		Path path = file.toAbsolutePath().normalize();
+		put(path, Files.readAttributes(path, BasicFileAttributes.class), sha1);
+	}
+
+	private static void put(Path path, BasicFileAttributes attributes, String sha1) {
+		Entry entry = new Entry(sha1, attributes.size(), attributes.lastModifiedTime().toMillis());
+
+		synchronized (LOCK) {
+			Map<String, Entry> entries = getEntries();
+			// Moves it to the end, evicted last
+			entries.remove(path.toString());
+			entries.put(path.toString(), entry);
+			trim(entries);
+
+			try {
+				if (lines >= 2 * maxEntries) {
+					save(entries);
+					lines = entries.size();
+				} else {
+					append(path.toString(), entry);
+					lines++;
+				}
+			} catch (IOException e) {
+				// Only makes the next check slower
+				System.err.printf("Failed to update the verification index: %s%n", e);
+			}
+		}
+	}
+
+	private static Map<String, Entry> getEntries() {
+		Path file = getIndexFile();
+
+		if (entries == null || !file.equals(loadedFrom)) {
+			entries = load(file);
+			loadedFrom = file;
+		}
+
+		return entries;
+	}
+
+	private static void trim(Map<String, Entry> entries) {
+		Iterator<String> iterator = entries.keySet().iterator();
+
+		while (entries.size() > maxEntries && iterator.hasNext()) {
+			iterator.next();
+			iterator.remove();
+		}
+	}
+
+	private static Map<String, Entry> load(Path file) {
+		Map<String, Entry> entries = new LinkedHashMap<>();
+		lines = 0;
+
+		try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			String line;
+
+			while ((line = reader.readLine()) != null) {
+				lines++;
+				// <sha1> <size> <modification time> <path>, the path may contain spaces
+				String[] parts = line.split(" ", 4);
+
+				if (parts.length == 4 && parts[0].matches("[0-9a-f]{40}")) {
+					try {
+						Entry entry = new Entry(parts[0], Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+						// A later line for the same path was recorded later
+						entries.remove(parts[3]);
+						entries.put(parts[3], entry);
+					} catch (NumberFormatException e) {
+						// Corrupt line, the file is hashed again
+					}
+				}
+			}
+		} catch (NoSuchFileException e) {
+			// Nothing verified yet
+		} catch (IOException e) {
+			System.err.printf("Ignoring unreadable verification index %s: %s%n", file, e);
+		}
+
+		trim(entries);
+		return entries;
+	}
+
+	private static void save(Map<String, Entry> entries) throws IOException {
+		Path file = getIndexFile();
+		Files.createDirectories(file.getParent());
+		Path tmp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+
+		try {
+			try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+				for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+					writer.write(format(entry.getKey(), entry.getValue()));
+				}
+			}
+
+			Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+
+	private static void append(String path, Entry entry) throws IOException {
+		Path file = getIndexFile();
+		Files.createDirectories(file.getParent());
+		// A single write, so lines appended by other installers at the same time don't interleave
+		Files.write(file, format(path, entry).getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+	}
+
+	private static String format(String path, Entry entry) {
+		return entry.sha1 + " " + entry.size + " " + entry.lastModified + " " + path + System.lineSeparator();
+	}
+
+	private static Path getIndexFile() {
+		return Utils.cacheDir.resolve("verified.index");
+	}
+
+	private static final class Entry {
+		final String sha1;
+		final long size;
+		final long lastModified;
+
+		Entry(String sha1, long size, long lastModified) {
+			this.sha1 = sha1;
+			this.size = size;
+			this.lastModified = lastModified;
+		}
+
+		boolean matches(BasicFileAttributes attributes) {
+			return size == attributes.size() && lastModified == attributes.lastModifiedTime().toMillis();
+		}
+	}
+}
@@ -16,22 +16,55 @@
 
 package net.fabricmc.installer.util;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
-import mjson.Json;
-
 public class VersionMeta {
 	public final String id;
 	public final Map<String, Download> downloads;
 
-	public VersionMeta(Json json) {
-		id = json.at("id").asString();
-		downloads = new HashMap<>();
+	public VersionMeta(String id, Map<String, Download> downloads) {
+		this.id = id;
+		this.downloads = downloads;
+	}
+
+	/**
+	 * Reads only the id and the downloads, skipping the libraries and everything else in the version json.
+	 */
+	public static VersionMeta read(JsonReader reader) throws IOException {
+		String id = null;
+		Map<String, Download> downloads = new HashMap<>();
+
+		reader.beginObject();
+
+		while (reader.hasNext()) {
+			switch (reader.nextName()) {
+			case "id":
+				id = reader.nextString();
+				break;
+			case "downloads":
+				reader.beginObject();
+
+				while (reader.hasNext()) {
+					String name = reader.nextName();
+					downloads.put(name, Download.read(reader));
+				}
+
+				reader.endObject();
+				break;
+			default:
+				reader.skipValue();
+			}
+		}
+
+		reader.endObject();
 
-		for (Map.Entry<String, Json> entry : json.at("downloads").asJsonMap().entrySet()) {
-			downloads.put(entry.getKey(), new Download(entry.getValue()));
+		if (id == null) {
+			throw new IOException("Version json without an id");
 		}
+
+		return new VersionMeta(id, downloads);
 	}
 
 	public static class Download {
@@ -39,10 +72,42 @@ public class VersionMeta {
 		public final long size;
 		public final String url;
 
-		public Download(Json json) {
-			sha1 = json.at("sha1").asString();
-			size = json.at("size").asLong();
-			url = json.at("url").asString();
+		public Download(String sha1, long size, String url) {
+			this.sha1 = sha1;
+			this.size = size;
+			this.url = url;
+		}
+
+		static Download read(JsonReader reader) throws IOException {
+			String sha1 = null;
+			long size = -1;
+			String url = null;
+
+			reader.beginObject();
+
+			while (reader.hasNext()) {
+				switch (reader.nextName()) {
+				case "sha1":
+					sha1 = reader.nextString();
+					break;
+				case "size":
+					size = reader.nextLong();
+					break;
+				case "url":
+					url = reader.nextString();
+					break;
+				default:
+					reader.skipValue();
+				}
+			}
+
+			reader.endObject();
+
+			if (sha1 == null || size < 0 || url == null) {
+				throw new IOException("Incomplete download in the version json");
+			}
+
+			return new Download(sha1, size, url);
 		}
 	}
 }
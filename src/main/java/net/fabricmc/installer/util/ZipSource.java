@@ -0,0 +1,283 @@
+/*
+ * Copyright (c) 2016, 2017, 2018, 2019 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.installer.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * Minimal zip reader giving access to the compressed data of each entry, so it can be written to a {@link ZipWriter}
+ * without being inflated and deflated again.
+ *
+ * <p>Entries are read from the central directory. All reads are positional, one source may be read from several
+ * threads. Zip64, encrypted entries and compression methods other than stored and deflated are not supported.
+ */
+public final class ZipSource implements AutoCloseable {
+	static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+	static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+	static final int END_SIGNATURE = 0x06054b50;
+	static final int LOCAL_HEADER_SIZE = 30;
+	static final int CENTRAL_HEADER_SIZE = 46;
+	static final int END_SIZE = 22;
+
+	private final Path path;
+	private final FileChannel channel;
+	private final List<Entry> entries;
+
+	private ZipSource(Path path, FileChannel channel) throws IOException {
+		this.path = path;
+		this.channel = channel;
+		this.entries = Collections.unmodifiableList(readCentralDirectory());
+	}
+
+	public static ZipSource open(Path path) throws IOException {
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+
+		try {
+			return new ZipSource(path, channel);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return the entries in central directory order
+	 */
+	public List<Entry> getEntries() {
+		return entries;
+	}
+
+	/**
+	 * Opens the uncompressed content of the entry.
+	 */
+	public InputStream getInputStream(Entry entry) throws IOException {
+		InputStream raw = new ChannelInputStream(getDataOffset(entry), entry.compressedSize);
+
+		if (entry.method == ZipEntry.STORED) {
+			return raw;
+		}
+
+		return new EntryInflaterInputStream(raw);
+	}
+
+	/**
+	 * Reads the compressed content of the entry, as it is stored in this file.
+	 */
+	public byte[] readRaw(Entry entry) throws IOException {
+		if (entry.compressedSize > Integer.MAX_VALUE - 8) {
+			throw new ZipException("Entry too large: " + entry.name + " in " + path);
+		}
+
+		return read(getDataOffset(entry), (int) entry.compressedSize).array();
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	private long getDataOffset(Entry entry) throws IOException {
+		ByteBuffer header = read(entry.localHeaderOffset, LOCAL_HEADER_SIZE);
+
+		if (header.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+			throw new ZipException("Invalid local header for " + entry.name + " in " + path);
+		}
+
+		// The lengths in the local header may differ from the central directory
+		return entry.localHeaderOffset + LOCAL_HEADER_SIZE + (header.getShort(26) & 0xFFFF) + (header.getShort(28) & 0xFFFF);
+	}
+
+	private List<Entry> readCentralDirectory() throws IOException {
+		long size = channel.size();
+		int tailSize = (int) Math.min(size, 0xFFFF + END_SIZE);
+		ByteBuffer tail = read(size - tailSize, tailSize);
+		int end = -1;
+
+		// The end record is followed by a comment of up to 64k
+		for (int i = tailSize - END_SIZE; i >= 0; i--) {
+			if (tail.getInt(i) == END_SIGNATURE) {
+				end = i;
+				break;
+			}
+		}
+
+		if (end < 0) {
+			throw new ZipException("Not a zip file: " + path);
+		}
+
+		int count = tail.getShort(end + 10) & 0xFFFF;
+		long directorySize = tail.getInt(end + 12) & 0xFFFFFFFFL;
+		long directoryOffset = tail.getInt(end + 16) & 0xFFFFFFFFL;
+
+		if (count == 0xFFFF || directorySize == 0xFFFFFFFFL || directoryOffset == 0xFFFFFFFFL) {
+			throw new ZipException("Zip64 is not supported: " + path);
+		}
+
+		ByteBuffer directory = read(directoryOffset, (int) directorySize);
+		List<Entry> entries = new ArrayList<>(count);
+		int pos = 0;
+
+		for (int i = 0; i < count; i++) {
+			if (directory.getInt(pos) != CENTRAL_HEADER_SIGNATURE) {
+				throw new ZipException("Invalid central directory in " + path);
+			}
+
+			int flags = directory.getShort(pos + 8) & 0xFFFF;
+			int method = directory.getShort(pos + 10) & 0xFFFF;
+			int nameLength = directory.getShort(pos + 28) & 0xFFFF;
+			int extraLength = directory.getShort(pos + 30) & 0xFFFF;
+			int commentLength = directory.getShort(pos + 32) & 0xFFFF;
+
+			byte[] name = new byte[nameLength];
+			directory.position(pos + CENTRAL_HEADER_SIZE);
+			directory.get(name);
+
+			Entry entry = new Entry(new String(name, StandardCharsets.UTF_8),
+					method,
+					directory.getInt(pos + 16) & 0xFFFFFFFFL,
+					directory.getInt(pos + 20) & 0xFFFFFFFFL,
+					directory.getInt(pos + 24) & 0xFFFFFFFFL,
+					directory.getInt(pos + 42) & 0xFFFFFFFFL);
+
+			if ((flags & 1) != 0) {
+				throw new ZipException("Encrypted entries are not supported: " + entry.name + " in " + path);
+			} else if (method != ZipEntry.STORED && method != ZipEntry.DEFLATED) {
+				throw new ZipException("Unsupported compression method " + method + " for " + entry.name + " in " + path);
+			}
+
+			entries.add(entry);
+			pos += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+		}
+
+		return entries;
+	}
+
+	private ByteBuffer read(long position, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new EOFException("Unexpected end of " + path);
+			}
+		}
+
+		buffer.flip();
+		return buffer;
+	}
+
+	public static final class Entry {
+		public final String name;
+		public final int method;
+		public final long crc;
+		public final long compressedSize;
+		public final long size;
+		final long localHeaderOffset;
+
+		Entry(String name, int method, long crc, long compressedSize, long size, long localHeaderOffset) {
+			this.name = name;
+			this.method = method;
+			this.crc = crc;
+			this.compressedSize = compressedSize;
+			this.size = size;
+			this.localHeaderOffset = localHeaderOffset;
+		}
+
+		public boolean isDirectory() {
+			return name.endsWith("/");
+		}
+	}
+
+	private final class ChannelInputStream extends InputStream {
+		private long position;
+		private long remaining;
+
+		ChannelInputStream(long position, long length) {
+			this.position = position;
+			this.remaining = length;
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (remaining <= 0) {
+				return -1;
+			}
+
+			int read = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, remaining)), position);
+
+			if (read < 0) {
+				throw new EOFException("Unexpected end of " + path);
+			}
+
+			position += read;
+			remaining -= read;
+			return read;
+		}
+	}
+
+	private static final class EntryInflaterInputStream extends InflaterInputStream {
+		private boolean eof;
+
+		EntryInflaterInputStream(InputStream in) {
+			super(in, new Inflater(true), 8192);
+		}
+
+		@Override
+		protected void fill() throws IOException {
+			if (eof) {
+				throw new EOFException("Unexpected end of deflated entry");
+			}
+
+			len = in.read(buf, 0, buf.length);
+
+			if (len < 0) {
+				// Raw inflation may need an extra dummy byte to detect the end
+				buf[0] = 0;
+				len = 1;
+				eof = true;
+			}
+
+			inf.setInput(buf, 0, len);
+		}
+
+		@Override
+		public void close() throws IOException {
+			super.close();
+			inf.end();
+		}
+	}
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright (c) 2016, 2017, 2018, 2019 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.installer.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * Minimal zip writer that can copy entries from a {@link ZipSource} in their compressed form.
+ *
+ * <p>Every entry is written with its sizes and crc in the local header, no data descriptors are used, and with a fixed
+ * timestamp. Zip64 is only used for archives with more than 65535 entries.
+ */
+public final class ZipWriter implements AutoCloseable {
+	private static final int VERSION = 20;
+	private static final int VERSION_ZIP64 = 45;
+	private static final int UTF8_FLAG = 0x800;
+	private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+	private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+	// Every entry gets the same timestamp so identical inputs produce byte identical archives, same as Gradle's
+	private static final int DOS_TIME = toDosTime(LocalDateTime.of(1980, 2, 1, 0, 0));
+
+	private final CountingOutputStream out;
+	private final int level;
+	private final List<CentralRecord> records = new ArrayList<>();
+	private boolean closed;
+
+	public ZipWriter(OutputStream out) {
+		this(out, Deflater.DEFAULT_COMPRESSION);
+	}
+
+	/**
+	 * @param level the {@link Deflater} level for new entries, {@link Deflater#NO_COMPRESSION} stores them
+	 */
+	public ZipWriter(OutputStream out, int level) {
+		this.out = new CountingOutputStream(out);
+		this.level = level;
+	}
+
+	/**
+	 * Writes an entry read from a {@link ZipSource} without recompressing it.
+	 *
+	 * @param compressedData the data returned by {@link ZipSource#readRaw(ZipSource.Entry)}
+	 */
+	public void copy(ZipSource.Entry entry, byte[] compressedData) throws IOException {
+		writeLocalHeader(entry.name, entry.method, entry.crc, entry.compressedSize, entry.size);
+		out.write(compressedData);
+	}
+
+	/**
+	 * Writes a new deflated entry, or a stored one if compression is off or deflating doesn't make it smaller.
+	 */
+	public void write(String name, byte[] data) throws IOException {
+		CRC32 crc = new CRC32();
+		crc.update(data, 0, data.length);
+
+		byte[] compressed = level == Deflater.NO_COMPRESSION ? data : deflate(data, level);
+
+		if (compressed.length < data.length) {
+			writeLocalHeader(name, ZipEntry.DEFLATED, crc.getValue(), compressed.length, data.length);
+			out.write(compressed);
+		} else {
+			writeLocalHeader(name, ZipEntry.STORED, crc.getValue(), data.length, data.length);
+			out.write(data);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed) return;
+		closed = true;
+
+		try {
+			long directoryOffset = out.count;
+
+			for (CentralRecord record : records) {
+				writeCentralHeader(record);
+			}
+
+			long directorySize = out.count - directoryOffset;
+
+			if (directoryOffset > 0xFFFFFFFFL) {
+				throw new ZipException("Zip files over 4 GB are not supported");
+			}
+
+			if (records.size() >= 0xFFFF) {
+				writeZip64End(directoryOffset, directorySize);
+			}
+
+			int count = Math.min(records.size(), 0xFFFF);
+			ByteArrayOutputStream end = new ByteArrayOutputStream(ZipSource.END_SIZE);
+			writeInt(end, ZipSource.END_SIGNATURE);
+			writeShort(end, 0); // this disk
+			writeShort(end, 0); // central directory disk
+			writeShort(end, count);
+			writeShort(end, count);
+			writeInt(end, directorySize);
+			writeInt(end, directoryOffset);
+			writeShort(end, 0); // comment length
+			end.writeTo(out);
+		} finally {
+			out.close();
+		}
+	}
+
+	private void writeLocalHeader(String name, int method, long crc, long compressedSize, long size) throws IOException {
+		if (compressedSize > 0xFFFFFFFFL || size > 0xFFFFFFFFL || out.count > 0xFFFFFFFFL) {
+			throw new ZipException("Zip files over 4 GB are not supported");
+		}
+
+		byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+		records.add(new CentralRecord(nameBytes, method, crc, compressedSize, size, out.count));
+
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream(ZipSource.LOCAL_HEADER_SIZE + nameBytes.length);
+		writeInt(buffer, ZipSource.LOCAL_HEADER_SIGNATURE);
+		writeShort(buffer, VERSION);
+		writeShort(buffer, UTF8_FLAG);
+		writeShort(buffer, method);
+		writeInt(buffer, DOS_TIME);
+		writeInt(buffer, crc);
+		writeInt(buffer, compressedSize);
+		writeInt(buffer, size);
+		writeShort(buffer, nameBytes.length);
+		writeShort(buffer, 0); // extra length
+		buffer.write(nameBytes);
+		buffer.writeTo(out);
+	}
+
+	private void writeCentralHeader(CentralRecord record) throws IOException {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream(ZipSource.CENTRAL_HEADER_SIZE + record.name.length);
+		writeInt(buffer, ZipSource.CENTRAL_HEADER_SIGNATURE);
+		writeShort(buffer, VERSION); // made by
+		writeShort(buffer, VERSION); // needed to extract
+		writeShort(buffer, UTF8_FLAG);
+		writeShort(buffer, record.method);
+		writeInt(buffer, DOS_TIME);
+		writeInt(buffer, record.crc);
+		writeInt(buffer, record.compressedSize);
+		writeInt(buffer, record.size);
+		writeShort(buffer, record.name.length);
+		writeShort(buffer, 0); // extra length
+		writeShort(buffer, 0); // comment length
+		writeShort(buffer, 0); // disk
+		writeShort(buffer, 0); // internal attributes
+		writeInt(buffer, 0); // external attributes
+		writeInt(buffer, record.localHeaderOffset);
+		buffer.write(record.name);
+		buffer.writeTo(out);
+	}
+
+	private void writeZip64End(long directoryOffset, long directorySize) throws IOException {
+		long endOffset = out.count;
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream(76);
+
+		writeInt(buffer, ZIP64_END_SIGNATURE);
+		writeLong(buffer, 44); // size of the remaining record
+		writeShort(buffer, VERSION_ZIP64);
+		writeShort(buffer, VERSION_ZIP64);
+		writeInt(buffer, 0); // this disk
+		writeInt(buffer, 0); // central directory disk
+		writeLong(buffer, records.size());
+		writeLong(buffer, records.size());
+		writeLong(buffer, directorySize);
+		writeLong(buffer, directoryOffset);
+
+		writeInt(buffer, ZIP64_LOCATOR_SIGNATURE);
+		writeInt(buffer, 0); // disk with the zip64 end record
+		writeLong(buffer, endOffset);
+		writeInt(buffer, 1); // total disks
+
+		buffer.writeTo(out);
+	}
+
+	private static byte[] deflate(byte[] data, int level) {
+		Deflater deflater = new Deflater(level, true);
+
+		try {
+			deflater.setInput(data);
+			deflater.finish();
+
+			ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, data.length / 2));
+			byte[] buffer = new byte[8192];
+
+			while (!deflater.finished()) {
+				int len = deflater.deflate(buffer);
+				compressed.write(buffer, 0, len);
+			}
+
+			return compressed.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	static int toDosTime(LocalDateTime time) {
+		if (time.getYear() < 1980) {
+			time = LocalDateTime.of(1980, 1, 1, 0, 0);
+		}
+
+		int date = (time.getYear() - 1980) << 9 | time.getMonthValue() << 5 | time.getDayOfMonth();
+		int dayTime = time.getHour() << 11 | time.getMinute() << 5 | time.getSecond() >> 1;
+		return date << 16 | dayTime;
+	}
+
+	private static void writeShort(ByteArrayOutputStream out, int value) {
+		out.write(value & 0xFF);
+		out.write((value >>> 8) & 0xFF);
+	}
+
+	private static void writeInt(ByteArrayOutputStream out, long value) {
+		writeShort(out, (int) (value & 0xFFFF));
+		writeShort(out, (int) ((value >>> 16) & 0xFFFF));
+	}
+
+	private static void writeLong(ByteArrayOutputStream out, long value) {
+		writeInt(out, value & 0xFFFFFFFFL);
+		writeInt(out, value >>> 32);
+	}
+
+	private static final class CentralRecord {
+		final byte[] name;
+		final int method;
+		final long crc;
+		final long compressedSize;
+		final long size;
+		final long localHeaderOffset;
+
+		CentralRecord(byte[] name, int method, long crc, long compressedSize, long size, long localHeaderOffset) {
+			this.name = name;
+			this.method = method;
+			this.crc = crc;
+			this.compressedSize = compressedSize;
+			this.size = size;
+			this.localHeaderOffset = localHeaderOffset;
+		}
+	}
+
+	private static final class CountingOutputStream extends FilterOutputStream {
+		long count;
+
+		CountingOutputStream(OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			count += len;
+		}
+	}
+}
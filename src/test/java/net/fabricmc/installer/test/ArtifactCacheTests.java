@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2016, 2017, 2018, 2019 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.installer.test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.fabricmc.installer.util.ArtifactCache;
+import net.fabricmc.installer.util.HttpTransport;
+import net.fabricmc.installer.util.Library;
+import net.fabricmc.installer.util.MetadataCache;
+import net.fabricmc.installer.util.Utils;
+
+public class ArtifactCacheTests {
+	private static final String REPO = "https://repo.invalid/";
+
+	private final byte[] data = new byte[200_000];
+	private final byte[] otherData = new byte[200_000];
+	private StubHttpTransport transport;
+	private Path dir;
+	private Path previousCacheDir;
+	private long previousMaxSize;
+
+	@Before
+	public void setup() throws IOException {
+		Random random = new Random(42);
+		random.nextBytes(data);
+		random.nextBytes(otherData);
+		transport = new StubHttpTransport();
+		HttpTransport.set(transport);
+
+		dir = Files.createTempDirectory("fabric-installer-test");
+		previousCacheDir = Utils.cacheDir;
+		previousMaxSize = ArtifactCache.maxSize;
+		Utils.cacheDir = dir.resolve("cache");
+	}
+
+	@After
+	public void cleanup() throws IOException {
+		HttpTransport.set(null);
+		Utils.cacheDir = previousCacheDir;
+		ArtifactCache.maxSize = previousMaxSize;
+		Utils.deleteDirectory(dir);
+	}
+
+	@Test
+	public void testHitAndMiss() throws Exception {
+		// Mapped to the same cache entry by a lossy key
+		Library library = add("net.example.a_b:lib:1.0", data);
+		Library other = add("net.example.a.b:lib:1.0", otherData);
+
+		ArtifactCache.fetch(library, dir.resolve("first.jar"), null);
+		ArtifactCache.fetch(library, dir.resolve("second.jar"), null);
+		ArtifactCache.fetch(other, dir.resolve("other.jar"), null);
+
+		Assert.assertArrayEquals(data, Files.readAllBytes(dir.resolve("second.jar")));
+		Assert.assertArrayEquals(otherData, Files.readAllBytes(dir.resolve("other.jar")));
+		Assert.assertEquals(1, countRequests(library));
+		Assert.assertEquals(1, countRequests(other));
+	}
+
+	@Test
+	public void testConcurrentFetch() throws Exception {
+		Library library = add("net.example:lib:1.0", data);
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		List<Future<?>> futures = new ArrayList<>();
+
+		try {
+			for (int i = 0; i < 8; i++) {
+				Path target = dir.resolve("lib-" + i + ".jar");
+
+				futures.add(executor.submit(() -> {
+					ArtifactCache.fetch(library, target, null);
+					return null;
+				}));
+			}
+
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		for (int i = 0; i < 8; i++) {
+			Assert.assertArrayEquals(data, Files.readAllBytes(dir.resolve("lib-" + i + ".jar")));
+		}
+
+		Assert.assertEquals(1, countRequests(library));
+	}
+
+	@Test
+	public void testEviction() throws Exception {
+		Library first = add("net.example:first:1.0", data);
+		// Same content as the first, so the same object
+		Library copy = add("net.example:copy:1.0", data);
+		Library other = add("net.example:other:1.0", otherData);
+		ArtifactCache.maxSize = data.length + otherData.length / 2;
+
+		fetch(first, "first.jar");
+		fetch(copy, "copy.jar");
+		fetch(copy, "copy-again.jar");
+		Assert.assertEquals(1, countRequests(copy));
+
+		// Doesn't fit next to the other two, which are older
+		fetch(other, "other.jar");
+		fetch(other, "other-again.jar");
+		fetch(first, "first-again.jar");
+
+		Assert.assertArrayEquals(data, Files.readAllBytes(dir.resolve("first-again.jar")));
+		Assert.assertEquals(1, countRequests(other));
+		Assert.assertEquals(2, countRequests(first));
+	}
+
+	@Test
+	public void testEvictionSkipsEntriesBeingPublished() throws Exception {
+		Library first = add("net.example:first:1.0", data);
+		Library other = add("net.example:other:1.0", otherData);
+		ArtifactCache.maxSize = otherData.length;
+		// Created empty by a concurrent publish, before the sha1 is written to it
+		Path indexDir = Utils.cacheDir.resolve("artifacts").resolve("index");
+		Files.createDirectories(indexDir);
+		Path pending = Files.createFile(indexDir.resolve("pending.sha1.tmp"));
+
+		fetch(first, "first.jar");
+		fetch(other, "other.jar");
+		fetch(first, "first-again.jar");
+
+		Assert.assertEquals(2, countRequests(first));
+		Assert.assertTrue(Files.exists(pending));
+	}
+
+	@Test
+	public void testUnreferencedObjectIsDeleted() throws Exception {
+		Library library = add("net.example:lib:1.0", data);
+		fetch(library, "first.jar");
+		Path artifactsDir = Utils.cacheDir.resolve("artifacts");
+		Path oldObject = ArtifactCache.getCached(library);
+		Path entry;
+
+		try (Stream<Path> stream = Files.list(artifactsDir.resolve("index"))) {
+			entry = stream.findFirst().get();
+		}
+
+		// Republished with different content, the entry no longer points at an existing object
+		add("net.example:lib:1.0", otherData);
+		Files.write(entry, "0000000000000000000000000000000000000000".getBytes(StandardCharsets.UTF_8));
+		// Concurrent stores are given some time to publish their index entry
+		Files.setLastModifiedTime(oldObject, FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1)));
+
+		long previousTtl = MetadataCache.ttl;
+		// The sha1 file changed as well
+		MetadataCache.ttl = 0;
+
+		try {
+			fetch(library, "second.jar");
+		} finally {
+			MetadataCache.ttl = previousTtl;
+		}
+
+		Assert.assertArrayEquals(otherData, Files.readAllBytes(dir.resolve("second.jar")));
+		Assert.assertFalse(Files.exists(oldObject));
+		Assert.assertTrue(Files.exists(ArtifactCache.getCached(library)));
+	}
+
+	private void fetch(Library library, String target) throws Exception {
+		ArtifactCache.fetch(library, dir.resolve(target), null);
+		// Eviction goes by modification time
+		Thread.sleep(20);
+	}
+
+	private Library add(String name, byte[] body) throws NoSuchAlgorithmException {
+		Library library = new Library(name, REPO, null);
+		transport.add(library.getURL(), body);
+		transport.add(library.getURL() + ".sha1", Utils.bytesToHex(MessageDigest.getInstance("SHA-1").digest(body)).getBytes(StandardCharsets.UTF_8));
+		return library;
+	}
+
+	private long countRequests(Library library) {
+		return transport.requests.stream().filter(request -> request.url.equals(library.getURL())).count();
+	}
+}
@@ -0,0 +1,516 @@
+/*
+ * Copyright (c) 2016, 2017, 2018, 2019 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.installer.test;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import mjson.Json;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.fabricmc.installer.InstallPlanner;
+import net.fabricmc.installer.server.MinecraftServerDownloader;
+import net.fabricmc.installer.util.DownloadProgress;
+import net.fabricmc.installer.util.HttpTransport;
+import net.fabricmc.installer.util.InstallBundle;
+import net.fabricmc.installer.util.InstallerProgress;
+import net.fabricmc.installer.util.LauncherMeta;
+import net.fabricmc.installer.util.MetaHandler;
+import net.fabricmc.installer.util.MetadataCache;
+import net.fabricmc.installer.util.Mirrors;
+import net.fabricmc.installer.util.ParallelDownloader;
+import net.fabricmc.installer.util.Reference;
+import net.fabricmc.installer.util.Utils;
+import net.fabricmc.installer.util.VerificationIndex;
+
+public class DownloadTests {
+	private static final String URL = "https://example.invalid/file.jar";
+
+	private final byte[] data = new byte[200_000];
+	private final CountDownLatch blockedRequestInterrupted = new CountDownLatch(1);
+	private StubHttpTransport transport;
+	private Path dir;
+	private Path previousCacheDir;
+	private long previousTtl;
+
+	@Before
+	public void setup() throws IOException {
+		new Random(42).nextBytes(data);
+		transport = new StubHttpTransport().add(URL, data);
+		HttpTransport.set(transport);
+
+		dir = Files.createTempDirectory("fabric-installer-test");
+		previousCacheDir = Utils.cacheDir;
+		previousTtl = MetadataCache.ttl;
+		Utils.cacheDir = dir.resolve("cache");
+	}
+
+	@After
+	public void cleanup() throws IOException {
+		HttpTransport.set(null);
+		Utils.cacheDir = previousCacheDir;
+		MetadataCache.enabled = true;
+		MetadataCache.offline = false;
+		MetadataCache.ttl = previousTtl;
+		Mirrors.clear();
+		Utils.deleteDirectory(dir);
+	}
+
+	@Test
+	public void testDownload() throws IOException {
+		Path target = dir.resolve("file.jar");
+		String sha1 = Utils.downloadFile(new URL(URL), target, data.length, sha1(data), null);
+
+		Assert.assertArrayEquals(data, Files.readAllBytes(target));
+		Assert.assertEquals(sha1(data), sha1);
+		Assert.assertFalse(Files.exists(dir.resolve("file.jar.tmp")));
+	}
+
+	@Test
+	public void testResumeFromPartialFile() throws IOException {
+		Path target = dir.resolve("file.jar");
+		Files.write(dir.resolve("file.jar.tmp"), Arrays.copyOf(data, 1234));
+
+		Utils.downloadFile(new URL(URL), target, data.length, sha1(data), null);
+
+		Assert.assertArrayEquals(data, Files.readAllBytes(target));
+		Assert.assertEquals("bytes=1234-", transport.requests.get(0).headers.get("Range"));
+	}
+
+	@Test
+	public void testResumeAfterTruncatedTransfer() throws IOException {
+		Path target = dir.resolve("file.jar");
+		transport.truncateNextResponses = 1;
+
+		Utils.downloadFile(new URL(URL), target, -1, sha1(data), null);
+
+		Assert.assertArrayEquals(data, Files.readAllBytes(target));
+		Assert.assertEquals(2, transport.requests.size());
+		Assert.assertEquals("bytes=" + data.length / 2 + "-", transport.requests.get(1).headers.get("Range"));
+	}
+
+	@Test
+	public void testCorruptPartialFileIsDownloadedAgain() throws IOException {
+		Path target = dir.resolve("file.jar");
+		Files.write(dir.resolve("file.jar.tmp"), new byte[1234]);
+
+		Utils.downloadFile(new URL(URL), target, data.length, sha1(data), null);
+
+		Assert.assertArrayEquals(data, Files.readAllBytes(target));
+		Assert.assertEquals(2, transport.requests.size());
+		Assert.assertEquals("bytes=1234-", transport.requests.get(0).headers.get("Range"));
+		Assert.assertNull(transport.requests.get(1).headers.get("Range"));
+	}
+
+	@Test
+	public void testCompletePartialFile() throws IOException {
+		Path target = dir.resolve("file.jar");
+		Files.write(dir.resolve("file.jar.tmp"), data);
+
+		// The server has nothing left to send
+		Utils.downloadFile(new URL(URL), target, data.length, sha1(data), null);
+
+		Assert.assertArrayEquals(data, Files.readAllBytes(target));
+		Assert.assertEquals(1, transport.requests.size());
+	}
+
+	@Test
+	public void testFullDownloadWithoutRangeSupport() throws IOException {
+		Path target = dir.resolve("file.jar");
+		Files.write(dir.resolve("file.jar.tmp"), new byte[1234]);
+		transport.supportsRanges = false;
+
+		Utils.downloadFile(new URL(URL), target, data.length, sha1(data), null);
+
+		Assert.assertArrayEquals(data, Files.readAllBytes(target));
+	}
+
+	@Test
+	public void testChecksumMismatch() throws IOException {
+		Path target = dir.resolve("file.jar");
+
+		try {
+			Utils.downloadFile(new URL(URL), target, -1, "0000000000000000000000000000000000000000", null);
+			Assert.fail("Download should have failed validation");
+		} catch (IOException e) {
+			Assert.assertFalse(Files.exists(target));
+			Assert.assertFalse(Files.exists(dir.resolve("file.jar.tmp")));
+		}
+	}
+
+	@Test
+	public void testFirstFailureIsThrown() throws Exception {
+		CompletableFuture<String> release = new CompletableFuture<>();
+
+		try (ParallelDownloader downloader = new ParallelDownloader(3)) {
+			CompletableFuture<String> failed = downloader.submit(() -> {
+				throw new FileNotFoundException("first");
+			});
+			CompletableFuture<String> running = downloader.submit(release::join);
+			CompletableFuture<String> alsoFailed = downloader.submit(() -> {
+				throw new IOException("second");
+			});
+
+			while (!failed.isDone() || !alsoFailed.isDone()) {
+				Thread.sleep(1);
+			}
+
+			try {
+				ParallelDownloader.awaitAll(Arrays.asList(failed, running, alsoFailed));
+				Assert.fail("The failed download should have been thrown");
+			} catch (FileNotFoundException e) {
+				Assert.assertEquals("first", e.getMessage());
+				Assert.assertEquals(1, e.getSuppressed().length);
+				Assert.assertEquals("second", e.getSuppressed()[0].getMessage());
+				// Still running, so cancelled rather than waited for
+				Assert.assertTrue(running.isCancelled());
+			}
+		} finally {
+			release.complete("done");
+		}
+	}
+
+	@Test
+	public void testServerJarIsValidated() throws IOException {
+		transport.add(Reference.minecraftLauncherManifest, "{\"versions\": [{\"id\": \"1.8.9\", \"url\": \"https://example.invalid/1.8.9.json\"}]}".getBytes(StandardCharsets.UTF_8));
+		transport.add(Reference.experimentalVersionsManifest, "{\"versions\": []}".getBytes(StandardCharsets.UTF_8));
+		transport.add("https://example.invalid/1.8.9.json", String.format("{\"id\": \"1.8.9\", \"downloads\": {\"server\": {\"url\": \"%s\", \"sha1\": \"%s\", \"size\": %d}}}",
+				URL, sha1(data), data.length).getBytes(StandardCharsets.UTF_8));
+		LauncherMeta.refresh();
+
+		Path serverJar = dir.resolve("server.jar");
+		MinecraftServerDownloader downloader = new MinecraftServerDownloader("1.8.9");
+		downloader.downloadMinecraftServer(serverJar, InstallerProgress.CONSOLE);
+		downloader.downloadMinecraftServer(serverJar, InstallerProgress.CONSOLE);
+
+		Assert.assertArrayEquals(data, Files.readAllBytes(serverJar));
+		Assert.assertEquals(1, transport.requests.stream().filter(request -> request.url.equals(URL)).count());
+
+		// Same size, so only the hash tells them apart
+		byte[] corrupt = data.clone();
+		corrupt[0]++;
+		Files.write(serverJar, corrupt);
+		Files.setLastModifiedTime(serverJar, FileTime.fromMillis(0));
+		downloader.downloadMinecraftServer(serverJar, InstallerProgress.CONSOLE);
+
+		Assert.assertArrayEquals(data, Files.readAllBytes(serverJar));
+		Assert.assertEquals(2, transport.requests.stream().filter(request -> request.url.equals(URL)).count());
+	}
+
+	@Test
+	public void testProgressIsCoalesced() throws IOException {
+		List<DownloadProgress> updates = new ArrayList<>();
+		long interval = DownloadProgress.interval;
+		DownloadProgress.interval = 60_000;
+
+		try {
+			Utils.downloadFile(new URL(URL), dir.resolve("file.jar"), data.length, sha1(data), DownloadProgress.reporter("file.jar", updates::add));
+		} finally {
+			DownloadProgress.interval = interval;
+		}
+
+		// The first chunk and the completion, everything in between is dropped
+		Assert.assertEquals(2, updates.size());
+		Assert.assertEquals(data.length, updates.get(1).bytesDone);
+		Assert.assertEquals(data.length, updates.get(1).bytesTotal);
+		Assert.assertTrue(updates.get(1).done);
+	}
+
+	@Test
+	public void testMirrorFailover() throws IOException {
+		Path target = dir.resolve("file.jar");
+		transport.add("https://mirror.invalid/maven/file.jar", data);
+		Mirrors.add("https://primary.invalid/", Arrays.asList("https://mirror.invalid/maven"));
+
+		// The primary doesn't have the file, so it is ranked last and the mirror is used
+		Mirrors.downloadFile("https://primary.invalid/", "file.jar", target, data.length, sha1(data), null);
+
+		Assert.assertArrayEquals(data, Files.readAllBytes(target));
+		Assert.assertEquals(Arrays.asList("https://mirror.invalid/maven/", "https://primary.invalid/"), Mirrors.getCandidates("https://primary.invalid/", "file.jar"));
+	}
+
+	@Test
+	public void testInstallBundle() throws IOException {
+		Path bundleFile = dir.resolve("bundle.zip");
+		transport.add("https://example.invalid/meta.json", "{}".getBytes(StandardCharsets.UTF_8));
+		transport.truncateNextResponses = 1;
+
+		try (InstallBundle.Recorder recorder = new InstallBundle.Recorder(transport)) {
+			HttpTransport.set(recorder);
+			Utils.downloadFile(new URL(URL), dir.resolve("recorded.jar"), data.length, sha1(data), null);
+			Utils.readTextFile(new URL("https://example.invalid/meta.json"));
+			recorder.write(bundleFile, "1.8.9", "0.14.0");
+		}
+
+		try (InstallBundle bundle = InstallBundle.open(bundleFile)) {
+			HttpTransport.set(bundle);
+			Path target = dir.resolve("file.jar");
+			Utils.downloadFile(new URL(URL), target, data.length, sha1(data), null);
+
+			Assert.assertArrayEquals(data, Files.readAllBytes(target));
+			Assert.assertEquals("{}", Utils.readTextFile(new URL("https://example.invalid/meta.json")));
+			Assert.assertEquals("1.8.9", bundle.getGameVersion());
+
+			try {
+				Utils.readTextFile(new URL("https://example.invalid/missing.json"));
+				Assert.fail("Files missing from the bundle must not be fetched");
+			} catch (FileNotFoundException e) {
+				// expected
+			}
+		}
+	}
+
+	@Test
+	public void testVerificationIndex() throws IOException {
+		Path file = dir.resolve("server.jar");
+		Utils.downloadFile(new URL(URL), file);
+		FileTime modified = Files.getLastModifiedTime(file);
+
+		// Same size and modification time, only caught when hashing again
+		byte[] changed = data.clone();
+		changed[0]++;
+		Files.write(file, changed);
+		Files.setLastModifiedTime(file, modified);
+		Assert.assertEquals(sha1(data), VerificationIndex.sha1(file));
+
+		VerificationIndex.paranoid = true;
+
+		try {
+			Assert.assertEquals(sha1(changed), VerificationIndex.sha1(file));
+		} finally {
+			VerificationIndex.paranoid = false;
+		}
+
+		Files.setLastModifiedTime(file, FileTime.fromMillis(modified.toMillis() + 2000));
+		Assert.assertEquals(sha1(changed), VerificationIndex.sha1(file));
+	}
+
+	@Test
+	public void testVerificationIndexIsAppended() throws IOException {
+		Path index = Utils.cacheDir.resolve("verified.index");
+		Path a = Files.write(dir.resolve("a.jar"), data);
+		Path b = Files.write(dir.resolve("b.jar"), new byte[]{1});
+		Path c = Files.write(dir.resolve("c.jar"), new byte[]{2});
+		int previousMaxEntries = VerificationIndex.maxEntries;
+		VerificationIndex.maxEntries = 2;
+
+		try {
+			VerificationIndex.record(a, "0000000000000000000000000000000000000000");
+			VerificationIndex.record(a, sha1(data));
+			Assert.assertEquals(2, Files.readAllLines(index).size());
+
+			// Loaded again from the file, the later line wins
+			Utils.cacheDir = dir.resolve("other-cache");
+			VerificationIndex.sha1(b);
+			Utils.cacheDir = index.getParent();
+			Assert.assertEquals(sha1(data), VerificationIndex.sha1(a));
+
+			VerificationIndex.record(b, sha1(new byte[]{1}));
+			VerificationIndex.record(c, sha1(new byte[]{2}));
+			Assert.assertEquals(4, Files.readAllLines(index).size());
+
+			// Rewritten with only the entries that are kept
+			VerificationIndex.record(a, sha1(data));
+			List<String> lines = Files.readAllLines(index);
+			Assert.assertEquals(2, lines.size());
+			Assert.assertTrue(lines.get(0).endsWith(c.toString()));
+			Assert.assertTrue(lines.get(1).endsWith(a.toString()));
+		} finally {
+			VerificationIndex.maxEntries = previousMaxEntries;
+		}
+	}
+
+	@Test
+	public void testLauncherMetaLoadsOnce() throws Exception {
+		transport.add(Reference.minecraftLauncherManifest, "{\"versions\": [{\"id\": \"1.8.9\", \"url\": \"https://example.invalid/1.8.9.json\"}]}".getBytes(StandardCharsets.UTF_8));
+		transport.add(Reference.experimentalVersionsManifest, "{\"versions\": []}".getBytes(StandardCharsets.UTF_8));
+		LauncherMeta.clear();
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		List<Future<LauncherMeta>> futures = new ArrayList<>();
+
+		try {
+			for (int i = 0; i < 8; i++) {
+				futures.add(executor.submit(LauncherMeta::getLauncherMeta));
+			}
+
+			for (Future<LauncherMeta> future : futures) {
+				Assert.assertSame(futures.get(0).get(), future.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		Assert.assertEquals(2, transport.requests.size());
+		Assert.assertEquals("https://example.invalid/1.8.9.json", LauncherMeta.getLauncherMeta().getVersion("1.8.9").url);
+		Assert.assertNotSame(futures.get(0).get(), LauncherMeta.refresh());
+	}
+
+	@Test
+	public void testLoaderListsAreMemoised() throws IOException {
+		transport.add("https://example.invalid/loader/1.8.9", "[{\"version\": \"0.14.0\", \"stable\": true}]".getBytes(StandardCharsets.UTF_8));
+		transport.add("https://example.invalid/loader/1.7.10", "[{\"version\": \"0.13.0\", \"stable\": true}]".getBytes(StandardCharsets.UTF_8));
+		MetaHandler meta = new MetaHandler("https://example.invalid/loader");
+		MetadataCache.enabled = false;
+
+		meta.load("1.8.9");
+		meta.load("1.7.10");
+		meta.load("1.8.9");
+		Assert.assertEquals("0.14.0", meta.getLatestVersion(false).getVersion());
+		Assert.assertEquals(2, transport.requests.size());
+
+		meta.invalidate("1.8.9");
+		meta.load("1.8.9");
+		Assert.assertEquals(3, transport.requests.size());
+	}
+
+	@Test
+	public void testSupersededLoadIsCancelled() throws Exception {
+		transport.add("https://example.invalid/loader/slow", "[{\"version\": \"0.14.0\", \"stable\": true}]".getBytes(StandardCharsets.UTF_8));
+		transport.add("https://example.invalid/loader/fast", "[{\"version\": \"0.13.0\", \"stable\": true}]".getBytes(StandardCharsets.UTF_8));
+		CountDownLatch release = blockRequests("/slow");
+		MetaHandler meta = new MetaHandler("https://example.invalid/loader");
+		List<String> completed = new CopyOnWriteArrayList<>();
+		meta.onComplete(versions -> completed.add(versions.get(0).getVersion()));
+		// No snapshots from the metadata cache
+		MetadataCache.enabled = false;
+
+		CompletableFuture<?> slow = meta.loadAsync("slow");
+		meta.load("fast");
+
+		Assert.assertTrue(slow.isCancelled());
+		Assert.assertEquals(Collections.singletonList("0.13.0"), completed);
+		// The download behind it is stopped as well
+		Assert.assertTrue(blockedRequestInterrupted.await(10, TimeUnit.SECONDS));
+		release.countDown();
+
+		// Nothing of the superseded load was kept, so it is loaded again
+		meta.loadAsync("slow").get();
+
+		Assert.assertEquals(Arrays.asList("0.13.0", "0.14.0"), completed);
+		Assert.assertEquals(1, transport.requests.stream().filter(request -> request.url.endsWith("/slow")).count());
+
+		// Late consumers receive the latest list
+		List<String> late = new ArrayList<>();
+		meta.onComplete(versions -> late.add(versions.get(0).getVersion()));
+		Assert.assertEquals(Collections.singletonList("0.14.0"), late);
+	}
+
+	@Test
+	public void testSnapshotIsShownFirst() throws Exception {
+		transport.add("https://example.invalid/game", "[{\"version\": \"1.8.9\", \"stable\": true}]".getBytes(StandardCharsets.UTF_8));
+		// Fetched by an earlier run
+		new MetaHandler("https://example.invalid").load("game");
+
+		CountDownLatch release = blockRequests("/game");
+		MetaHandler meta = new MetaHandler("https://example.invalid");
+		List<Boolean> snapshots = new CopyOnWriteArrayList<>();
+		meta.onComplete(versions -> snapshots.add(MetaHandler.isSnapshot(versions)));
+		MetadataCache.ttl = 0;
+
+		CompletableFuture<?> future = meta.loadAsync("game");
+		Assert.assertEquals(Collections.singletonList(true), snapshots);
+
+		release.countDown();
+		future.get();
+		Assert.assertEquals(Arrays.asList(true, false), snapshots);
+		Assert.assertEquals("1.8.9", meta.getLatestVersion(false).getVersion());
+	}
+
+	@Test
+	public void testResolveInstallPlans() throws IOException {
+		transport.add("https://example.invalid/meta/game", "[{\"version\": \"1.8.9\", \"stable\": true}]".getBytes(StandardCharsets.UTF_8));
+		transport.add("https://example.invalid/meta/loader/1.8.9", "[{\"version\": \"0.14.0\", \"stable\": true}]".getBytes(StandardCharsets.UTF_8));
+		transport.add(Reference.FABRIC_MAVEN + "net/fabricmc/fabric-loader/0.14.0/fabric-loader-0.14.0.json", ("{\"mainClass\": {\"server\": \"net.fabricmc.loader.impl.launch.knot.KnotServer\"},"
+				+ " \"libraries\": {\"common\": [{\"name\": \"org.ow2.asm:asm:9.2\", \"url\": \"https://maven.fabricmc.net/\"}], \"server\": []}}").getBytes(StandardCharsets.UTF_8));
+		transport.add(Reference.minecraftLauncherManifest, "{\"versions\": [{\"id\": \"1.8.9\", \"url\": \"https://example.invalid/1.8.9.json\"}]}".getBytes(StandardCharsets.UTF_8));
+		transport.add(Reference.experimentalVersionsManifest, "{\"versions\": []}".getBytes(StandardCharsets.UTF_8));
+		transport.add("https://example.invalid/1.8.9.json", "{\"id\": \"1.8.9\", \"downloads\": {\"server\": {\"url\": \"https://example.invalid/server.jar\", \"sha1\": \"abc\", \"size\": 3}}}".getBytes(StandardCharsets.UTF_8));
+		LauncherMeta.refresh();
+
+		InstallPlanner planner = new InstallPlanner(new MetaHandler("https://example.invalid/meta/game"), new MetaHandler("https://example.invalid/meta/loader"), false);
+		List<Json> plans = planner.resolve(InstallPlanner.parseSelectors("latest:latest, 1.8.9:0.14.0\n1.8.9")).asJsonList();
+
+		Assert.assertEquals(3, plans.size());
+		Assert.assertEquals("latest:latest", plans.get(0).at("selector").asString());
+		Assert.assertEquals("0.14.0", plans.get(0).at("loaderVersion").asString());
+		Assert.assertEquals("net.fabricmc.loader.impl.launch.knot.KnotServer", plans.get(0).at("mainClass").asString());
+		Assert.assertFalse(plans.get(0).at("shadeLibraries").asBoolean());
+		Assert.assertEquals(3, plans.get(0).at("libraries").asJsonList().size());
+		Assert.assertEquals("https://example.invalid/server.jar", plans.get(0).at("serverJar").at("url").asString());
+		Assert.assertEquals(plans.get(0).at("libraries"), plans.get(1).at("libraries"));
+		Assert.assertTrue(plans.get(2).has("error"));
+		Assert.assertTrue(InstallPlanner.hasErrors(Json.array(plans.toArray())));
+		// Both selectors resolve to the same versions and share one plan
+		Assert.assertEquals(1, transport.requests.stream().filter(request -> request.url.endsWith("fabric-loader-0.14.0.json")).count());
+	}
+
+	// Requests for urls ending with the suffix wait for the returned latch
+	private CountDownLatch blockRequests(String suffix) {
+		CountDownLatch release = new CountDownLatch(1);
+
+		HttpTransport.set(new HttpTransport() {
+			@Override
+			public Response get(URL url, Map<String, String> headers) throws IOException {
+				if (url.getPath().endsWith(suffix)) {
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						blockedRequestInterrupted.countDown();
+						throw new IOException(e);
+					}
+				}
+
+				return transport.get(url, headers);
+			}
+		});
+
+		return release;
+	}
+
+	private static String sha1(byte[] bytes) throws IOException {
+		Path tmp = Files.createTempFile("fabric-installer-test", null);
+
+		try {
+			Files.write(tmp, bytes);
+			return Utils.sha1String(tmp);
+		} finally {
+			Files.delete(tmp);
+		}
+	}
+}
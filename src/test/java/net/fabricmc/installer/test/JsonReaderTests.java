@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2016, 2017, 2018, 2019 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.installer.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.fabricmc.installer.util.JsonReader;
+import net.fabricmc.installer.util.VersionMeta;
+
+public class JsonReaderTests {
+	@Test
+	public void testVersionMeta() throws IOException {
+		String json = "{\"arguments\": {\"game\": [\"--username\", {\"rules\": [{\"action\": \"allow\"}], \"value\": [\"--demo\"]}]},"
+				+ " \"downloads\": {\"server\": {\"sha1\": \"abc\", \"size\": 123456789012, \"url\": \"https://example.invalid/server.jar\"}},"
+				+ " \"id\": \"1.8.9\", \"complianceLevel\": 0, \"libraries\": [], \"logging\": null, \"minimumLauncherVersion\": 21.5,"
+				+ " \"releaseTime\": \"2015-12-03T09:24:39+00:00\", \"enabled\": true}";
+
+		VersionMeta meta = VersionMeta.read(new JsonReader(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8))));
+
+		Assert.assertEquals("1.8.9", meta.id);
+		Assert.assertEquals(1, meta.downloads.size());
+		Assert.assertEquals("abc", meta.downloads.get("server").sha1);
+		Assert.assertEquals(123456789012L, meta.downloads.get("server").size);
+		Assert.assertEquals("https://example.invalid/server.jar", meta.downloads.get("server").url);
+	}
+
+	@Test
+	public void testEscapes() throws IOException {
+		JsonReader reader = new JsonReader(new StringReader("[\"a\\\"b\\\\c\\/d\\u00e9\\n\", \"ü\", -5, false]"));
+
+		reader.beginArray();
+		Assert.assertEquals("a\"b\\c/dé\n", reader.nextString());
+		Assert.assertEquals("ü", reader.nextString());
+		Assert.assertEquals(-5, reader.nextLong());
+		Assert.assertFalse(reader.nextBoolean());
+		Assert.assertFalse(reader.hasNext());
+		reader.endArray();
+		Assert.assertEquals(JsonReader.Token.END_DOCUMENT, reader.peek());
+	}
+
+	@Test(expected = IOException.class)
+	public void testTruncatedDocument() throws IOException {
+		JsonReader reader = new JsonReader(new StringReader("{\"versions\": [{\"id\": \"1.8.9\""));
+
+		reader.beginObject();
+		reader.nextName();
+		reader.skipValue();
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2016, 2017, 2018, 2019 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.installer.test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.fabricmc.installer.util.LaunchJarCache;
+import net.fabricmc.installer.util.Utils;
+
+public class LaunchJarCacheTests {
+	private Path dir;
+	private Path previousCacheDir;
+	private int previousMaxEntries;
+
+	@Before
+	public void setup() throws IOException {
+		dir = Files.createTempDirectory("fabric-installer-test");
+		previousCacheDir = Utils.cacheDir;
+		previousMaxEntries = LaunchJarCache.maxEntries;
+		Utils.cacheDir = dir.resolve("cache");
+	}
+
+	@After
+	public void cleanup() throws IOException {
+		Utils.cacheDir = previousCacheDir;
+		LaunchJarCache.maxEntries = previousMaxEntries;
+		Utils.deleteDirectory(dir);
+	}
+
+	@Test
+	public void testRestoreKeepsModificationTime() throws Exception {
+		LaunchJarCache.store(jar("built.jar", "a"), "a");
+		Path first = dir.resolve("first").resolve("launch.jar");
+		Path second = dir.resolve("second").resolve("launch.jar");
+
+		Assert.assertTrue(LaunchJarCache.restore(first, "a"));
+		// May share its inode with the stored jar and the second server's jar
+		FileTime modified = FileTime.fromMillis(Files.getLastModifiedTime(first).toMillis() - 60_000);
+		Files.setLastModifiedTime(first, modified);
+		Thread.sleep(20);
+
+		Assert.assertTrue(LaunchJarCache.restore(second, "a"));
+		Assert.assertEquals(modified, Files.getLastModifiedTime(first));
+	}
+
+	@Test
+	public void testLeastRecentlyUsedIsEvicted() throws Exception {
+		LaunchJarCache.maxEntries = 2;
+		LaunchJarCache.store(jar("a.jar", "a"), "a");
+		Thread.sleep(20);
+		LaunchJarCache.store(jar("b.jar", "b"), "b");
+		Thread.sleep(20);
+		Assert.assertTrue(LaunchJarCache.restore(dir.resolve("server").resolve("a.jar"), "a"));
+		Thread.sleep(20);
+
+		LaunchJarCache.store(jar("c.jar", "c"), "c");
+
+		Assert.assertTrue(LaunchJarCache.restore(dir.resolve("other").resolve("a.jar"), "a"));
+		Assert.assertFalse(LaunchJarCache.restore(dir.resolve("other").resolve("b.jar"), "b"));
+	}
+
+	private Path jar(String name, String fingerprint) throws IOException {
+		Manifest manifest = new Manifest();
+		manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+		manifest.getMainAttributes().put(LaunchJarCache.FINGERPRINT_ATTRIBUTE, fingerprint);
+		Path jar = dir.resolve(name);
+
+		try (OutputStream os = Files.newOutputStream(jar); JarOutputStream jos = new JarOutputStream(os, manifest)) {
+			jos.flush();
+		}
+
+		return jar;
+	}
+}
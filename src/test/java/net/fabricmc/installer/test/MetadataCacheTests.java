@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2016, 2017, 2018, 2019 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.installer.test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.fabricmc.installer.util.HttpTransport;
+import net.fabricmc.installer.util.MetadataCache;
+import net.fabricmc.installer.util.Utils;
+
+public class MetadataCacheTests {
+	private static final String URL = "https://example.invalid/versions.json";
+
+	private StubHttpTransport transport;
+	private Path dir;
+	private Path previousCacheDir;
+	private long previousTtl;
+
+	@Before
+	public void setup() throws IOException {
+		transport = new StubHttpTransport().add(URL, "[]".getBytes(StandardCharsets.UTF_8), "\"v1\"");
+		HttpTransport.set(transport);
+
+		dir = Files.createTempDirectory("fabric-installer-test");
+		previousCacheDir = Utils.cacheDir;
+		previousTtl = MetadataCache.ttl;
+		Utils.cacheDir = dir.resolve("cache");
+	}
+
+	@After
+	public void cleanup() throws IOException {
+		HttpTransport.set(null);
+		Utils.cacheDir = previousCacheDir;
+		MetadataCache.ttl = previousTtl;
+		MetadataCache.offline = false;
+		Utils.deleteDirectory(dir);
+	}
+
+	@Test
+	public void testFreshEntryIsUsed() throws IOException {
+		Assert.assertEquals("[]", Utils.readTextFile(new URL(URL)));
+		Assert.assertEquals("[]", Utils.readTextFile(new URL(URL)));
+
+		Assert.assertEquals(1, transport.requests.size());
+	}
+
+	@Test
+	public void testRevalidation() throws IOException {
+		MetadataCache.ttl = 0;
+
+		Assert.assertEquals("[]", Utils.readTextFile(new URL(URL)));
+		Assert.assertEquals("[]", Utils.readTextFile(new URL(URL)));
+
+		Assert.assertEquals(2, transport.requests.size());
+		Assert.assertEquals("\"v1\"", transport.requests.get(1).headers.get("If-None-Match"));
+
+		transport.add(URL, "[1]".getBytes(StandardCharsets.UTF_8), "\"v2\"");
+		Assert.assertEquals("[1]", Utils.readTextFile(new URL(URL)));
+
+		MetadataCache.offline = true;
+		Assert.assertEquals("[1]", Utils.readTextFile(new URL(URL)));
+		Assert.assertEquals(3, transport.requests.size());
+	}
+
+	@Test
+	public void testMetadataStream() throws IOException {
+		MetadataCache.ttl = 0;
+
+		// Read back from the cache file once it is written
+		try (InputStream is = Utils.openMetadataStream(new URL(URL))) {
+			Assert.assertEquals("[]", Utils.readString(is));
+		}
+
+		// Revalidated, the unchanged copy is read from the cache file
+		try (InputStream is = Utils.openMetadataStream(new URL(URL))) {
+			Assert.assertEquals("[]", Utils.readString(is));
+		}
+
+		Assert.assertEquals(2, transport.requests.size());
+		Assert.assertArrayEquals("[]".getBytes(StandardCharsets.UTF_8), MetadataCache.get().readCached(new URL(URL)));
+	}
+
+	@Test
+	public void testServerErrorUsesCachedCopy() throws IOException {
+		MetadataCache.ttl = 0;
+		Utils.readTextFile(new URL(URL));
+		transport.fail(URL, 503);
+
+		Assert.assertEquals("[]", Utils.readTextFile(new URL(URL)));
+		Assert.assertEquals(2, transport.requests.size());
+	}
+
+	@Test(expected = IOException.class)
+	public void testRemovedFileIsNotHidden() throws IOException {
+		MetadataCache.ttl = 0;
+		Utils.readTextFile(new URL(URL));
+		transport.fail(URL, HttpTransport.HTTP_NOT_FOUND);
+
+		Utils.readTextFile(new URL(URL));
+	}
+
+	@Test(expected = IOException.class)
+	public void testOfflineWithoutCache() throws IOException {
+		MetadataCache.offline = true;
+		Utils.readTextFile(new URL("https://example.invalid/missing.json"));
+	}
+}
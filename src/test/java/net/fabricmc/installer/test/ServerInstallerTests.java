@@ -0,0 +1,354 @@
+/*
+ * Copyright (c) 2016, 2017, 2018, 2019 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.installer.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.fabricmc.installer.LoaderVersion;
+import net.fabricmc.installer.server.ClassDataSharing;
+import net.fabricmc.installer.server.LaunchJarCompression;
+import net.fabricmc.installer.server.ServerInstaller;
+import net.fabricmc.installer.util.ArtifactCache;
+import net.fabricmc.installer.util.HttpTransport;
+import net.fabricmc.installer.util.InstallerProgress;
+import net.fabricmc.installer.util.LaunchJarCache;
+import net.fabricmc.installer.util.Library;
+import net.fabricmc.installer.util.Reference;
+import net.fabricmc.installer.util.Utils;
+
+public class ServerInstallerTests {
+	private static final String REPO = "https://maven.example.invalid/";
+	private static final String GAME_VERSION = "1.8.9";
+
+	private final List<String> messages = new ArrayList<>();
+	private final InstallerProgress progress = new InstallerProgress() {
+		@Override
+		public void updateProgress(String text) {
+			synchronized (messages) {
+				messages.add(text);
+			}
+		}
+
+		@Override
+		public void error(Throwable throwable) {
+			throw new RuntimeException(throwable);
+		}
+	};
+	private final List<Library> libraries = new ArrayList<>();
+	private StubHttpTransport transport;
+	private Path dir;
+	private Path previousCacheDir;
+
+	@Before
+	public void setup() throws Exception {
+		transport = new StubHttpTransport();
+		HttpTransport.set(transport);
+
+		dir = Files.createTempDirectory("fabric-installer-test");
+		previousCacheDir = Utils.cacheDir;
+		Utils.cacheDir = dir.resolve("cache");
+
+		Random random = new Random(42);
+		Manifest manifest = new Manifest();
+		manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+		manifest.getMainAttributes().put(Attributes.Name.MAIN_CLASS, ServerInstaller.DEFAULT_JAR_MAIN_CLASS);
+
+		for (String loaderVersion : new String[]{"0.12.0", "0.14.0"}) {
+			Library loader = add(new Library("net.fabricmc:fabric-loader:" + loaderVersion, Reference.FABRIC_MAVEN, null), manifest, classes(random, "net/fabricmc/loader/Loader"));
+			transport.add(loader.getURL().replace(".jar", ".json"), ("{\"mainClass\": {\"server\": \"net.fabricmc.loader.impl.launch.knot.KnotServer\"}, \"libraries\": {"
+					+ "\"common\": [{\"name\": \"net.example:common:1.0\", \"url\": \"" + REPO + "\"}],"
+					+ " \"server\": [{\"name\": \"net.example:server:1.0\", \"url\": \"" + REPO + "\"}]}}").getBytes(StandardCharsets.UTF_8));
+		}
+
+		add(new Library("net.fabricmc:intermediary:" + GAME_VERSION, Reference.LEGACY_FABRIC_MAVEN, null), null, classes(random, "mappings/mappings"));
+
+		Map<String, byte[]> common = classes(random, "net/example/common/A", "net/example/common/B");
+		common.put("META-INF/services/net.example.Service", "net.example.common.Impl\n".getBytes(StandardCharsets.UTF_8));
+		add(new Library("net.example:common:1.0", REPO, null), null, common);
+
+		Map<String, byte[]> server = classes(random, "net/example/server/C");
+		server.put("META-INF/services/net.example.Service", "net.example.server.Impl\n".getBytes(StandardCharsets.UTF_8));
+		add(new Library("net.example:server:1.0", REPO, null), null, server);
+	}
+
+	@After
+	public void cleanup() throws IOException {
+		HttpTransport.set(null);
+		Utils.cacheDir = previousCacheDir;
+		ArtifactCache.enabled = true;
+		LaunchJarCache.enabled = true;
+		Utils.deleteDirectory(dir);
+	}
+
+	@Test
+	public void testUnchangedLibrariesAreSkipped() throws IOException {
+		Path serverDir = dir.resolve("server");
+		install(serverDir, "0.14.0");
+		long requests = countJarRequests();
+		messages.clear();
+
+		install(serverDir, "0.14.0");
+
+		Assert.assertEquals(requests, countJarRequests());
+
+		for (Library library : libraries) {
+			String download = new MessageFormat(Utils.BUNDLE.getString("progress.download.library.entry")).format(new Object[]{library.name});
+			Assert.assertFalse(library.name + " was downloaded again", messages.contains(download));
+		}
+
+		String reused = new MessageFormat(Utils.BUNDLE.getString("progress.download.libraries.reused")).format(new Object[]{4, 4, size(serverDir.resolve("libraries")) / (1024.0 * 1024.0)});
+		Assert.assertTrue(messages.contains(reused));
+	}
+
+	@Test
+	public void testShadedLaunchJar() throws IOException {
+		Path serverDir = dir.resolve("server");
+		install(serverDir, "0.12.0");
+
+		try (ZipFile zip = new ZipFile(serverDir.resolve(ServerInstaller.DEFAULT_LAUNCH_JAR_NAME).toFile())) {
+			for (String name : new String[]{"net/fabricmc/loader/Loader.class", "mappings/mappings.class", "net/example/common/A.class", "net/example/server/C.class"}) {
+				Assert.assertNotNull(name, zip.getEntry(name));
+			}
+
+			try (InputStream is = zip.getInputStream(zip.getEntry("META-INF/services/net.example.Service"))) {
+				Assert.assertEquals("net.example.common.Impl\nnet.example.server.Impl\n", Utils.readString(is));
+			}
+		}
+	}
+
+	@Test
+	public void testFailedLaunchJarIsRebuilt() throws IOException {
+		Path serverDir = dir.resolve("server");
+		Path launchJar = serverDir.resolve(ServerInstaller.DEFAULT_LAUNCH_JAR_NAME);
+		install(serverDir, "0.12.0");
+		Files.delete(launchJar);
+		LaunchJarCache.enabled = false;
+
+		// Corrupt without changing the size or modification time, so the library is still considered installed
+		Path library = serverDir.resolve("libraries").resolve(new Library("net.example:common:1.0", REPO, null).getFileName());
+		byte[] data = Files.readAllBytes(library);
+		FileTime modified = Files.getLastModifiedTime(library);
+		Files.write(library, new byte[data.length]);
+		Files.setLastModifiedTime(library, modified);
+
+		try {
+			install(serverDir, "0.12.0");
+			Assert.fail("Shading a corrupt library should fail");
+		} catch (IOException e) {
+			Assert.assertNull(LaunchJarCache.readFingerprint(launchJar));
+		}
+
+		Files.write(library, data);
+		Files.setLastModifiedTime(library, modified);
+		install(serverDir, "0.12.0");
+
+		try (ZipFile zip = new ZipFile(launchJar.toFile())) {
+			Assert.assertNotNull(zip.getEntry("net/example/server/C.class"));
+		}
+
+		try (Stream<Path> files = Files.list(serverDir)) {
+			Assert.assertFalse(files.anyMatch(file -> file.getFileName().toString().endsWith(".tmp")));
+		}
+	}
+
+	@Test
+	public void testLaunchJarIsReproducible() throws IOException {
+		Path first = dir.resolve("first");
+		install(first, "0.12.0");
+
+		// Downloaded again, with the loader finishing after the other libraries
+		ArtifactCache.enabled = false;
+		LaunchJarCache.enabled = false;
+		CountDownLatch lastLibrary = new CountDownLatch(1);
+
+		HttpTransport.set(new HttpTransport() {
+			@Override
+			public Response get(URL url, Map<String, String> headers) throws IOException {
+				try {
+					if (url.getPath().endsWith("fabric-loader-0.12.0.jar")) {
+						lastLibrary.await(10, TimeUnit.SECONDS);
+					}
+
+					return transport.get(url, headers);
+				} catch (InterruptedException e) {
+					throw new IOException(e);
+				} finally {
+					if (url.getPath().endsWith("server-1.0.jar")) {
+						lastLibrary.countDown();
+					}
+				}
+			}
+		});
+
+		Path second = dir.resolve("second");
+		install(second, "0.12.0");
+		Path launchJar = second.resolve(ServerInstaller.DEFAULT_LAUNCH_JAR_NAME);
+		byte[] expected = Files.readAllBytes(first.resolve(ServerInstaller.DEFAULT_LAUNCH_JAR_NAME));
+		Assert.assertArrayEquals(expected, Files.readAllBytes(launchJar));
+
+		// Same libraries with other modification times
+		List<Path> libraryFiles;
+
+		try (Stream<Path> files = Files.walk(second.resolve("libraries"))) {
+			libraryFiles = files.filter(Files::isRegularFile).collect(Collectors.toList());
+		}
+
+		for (Path file : libraryFiles) {
+			Files.setLastModifiedTime(file, FileTime.fromMillis(1_000_000_000_000L));
+		}
+
+		Files.delete(launchJar);
+		install(second, "0.12.0");
+		Assert.assertArrayEquals(expected, Files.readAllBytes(launchJar));
+	}
+
+	@Test
+	public void testStoredLaunchJar() throws IOException {
+		Path serverDir = dir.resolve("server");
+		Path launchJar = serverDir.resolve(ServerInstaller.DEFAULT_LAUNCH_JAR_NAME);
+		ServerInstaller.install(serverDir, new LoaderVersion("0.12.0"), GAME_VERSION, progress, launchJar, LaunchJarCompression.parse("store"));
+
+		try (ZipFile zip = new ZipFile(launchJar.toFile())) {
+			Assert.assertTrue(zip.stream().allMatch(entry -> entry.getMethod() == ZipEntry.STORED));
+			Assert.assertEquals(20_000, zip.getEntry("net/example/server/C.class").getCompressedSize());
+		}
+
+		// Copied library entries keep their compression, so only store changes them
+		Assert.assertThrows(IllegalArgumentException.class, () -> LaunchJarCompression.parse("fast"));
+	}
+
+	@Test
+	public void testClassDataSharingWithoutServerJar() throws IOException {
+		Path serverDir = dir.resolve("server");
+		Path launchJar = serverDir.resolve(ServerInstaller.DEFAULT_LAUNCH_JAR_NAME);
+		Path serverJar = serverDir.resolve("server.jar");
+		Path archive = serverDir.resolve(ClassDataSharing.ARCHIVE_NAME);
+		install(serverDir, "0.14.0");
+		// Left over from an earlier install
+		Files.write(archive, new byte[]{1});
+		messages.clear();
+
+		Assert.assertFalse(ClassDataSharing.train(serverDir, archive, launchJar, serverJar, Arrays.asList("-jar", launchJar.getFileName().toString(), "nogui"), progress));
+		Assert.assertEquals(Collections.singletonList(new MessageFormat(Utils.BUNDLE.getString("progress.generating.cds.missing")).format(new Object[]{serverJar})), messages);
+
+		ClassDataSharing.deleteIfStale(archive, launchJar, serverJar);
+		Assert.assertFalse(Files.exists(archive));
+		Assert.assertFalse(ClassDataSharing.getLaunchCommand(serverDir).contains("SharedArchiveFile"));
+	}
+
+	@Test
+	public void testClassDataSharingKey() throws IOException {
+		Path serverDir = dir.resolve("server");
+		Path launchJar = serverDir.resolve(ServerInstaller.DEFAULT_LAUNCH_JAR_NAME);
+		install(serverDir, "0.14.0");
+		Path serverJar = Files.write(serverDir.resolve("server.jar"), new byte[]{1});
+		String key = ClassDataSharing.getKey(launchJar, serverJar);
+		Assert.assertEquals(key, ClassDataSharing.getKey(launchJar, serverJar));
+
+		// Same fingerprint, but the jvm would reject the archive
+		FileTime modified = Files.getLastModifiedTime(launchJar);
+		Files.setLastModifiedTime(launchJar, FileTime.fromMillis(modified.toMillis() + 2000));
+		Assert.assertNotEquals(key, ClassDataSharing.getKey(launchJar, serverJar));
+		Files.setLastModifiedTime(launchJar, modified);
+		Assert.assertEquals(key, ClassDataSharing.getKey(launchJar, serverJar));
+
+		// On the class path of the launch jar, it isn't shaded
+		Path library = serverDir.resolve("libraries").resolve(new Library("net.example:common:1.0", REPO, null).getFileName());
+		Files.setLastModifiedTime(library, FileTime.fromMillis(Files.getLastModifiedTime(library).toMillis() + 2000));
+		Assert.assertNotEquals(key, ClassDataSharing.getKey(launchJar, serverJar));
+	}
+
+	private void install(Path serverDir, String loaderVersion) throws IOException {
+		ServerInstaller.install(serverDir, new LoaderVersion(loaderVersion), GAME_VERSION, progress);
+	}
+
+	private long countJarRequests() {
+		return transport.requests.stream().filter(request -> request.url.endsWith(".jar")).count();
+	}
+
+	private Library add(Library library, Manifest manifest, Map<String, byte[]> entries) throws IOException, NoSuchAlgorithmException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		try (JarOutputStream jar = manifest != null ? new JarOutputStream(bytes, manifest) : new JarOutputStream(bytes)) {
+			for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+				jar.putNextEntry(new ZipEntry(entry.getKey()));
+				jar.write(entry.getValue());
+				jar.closeEntry();
+			}
+		}
+
+		byte[] data = bytes.toByteArray();
+		transport.add(library.getURL(), data);
+		transport.add(library.getURL() + ".sha1", Utils.bytesToHex(MessageDigest.getInstance("SHA-1").digest(data)).getBytes(StandardCharsets.UTF_8));
+		libraries.add(library);
+		return library;
+	}
+
+	// Compressible but not trivially
+	private static Map<String, byte[]> classes(Random random, String... names) {
+		Map<String, byte[]> classes = new LinkedHashMap<>();
+
+		for (String name : names) {
+			byte[] data = new byte[20_000];
+
+			for (int i = 0; i < data.length; i++) {
+				data[i] = (byte) random.nextInt(16);
+			}
+
+			classes.put(name + ".class", data);
+		}
+
+		return classes;
+	}
+
+	private static long size(Path dir) throws IOException {
+		try (Stream<Path> files = Files.walk(dir)) {
+			return files.filter(Files::isRegularFile).mapToLong(file -> file.toFile().length()).sum();
+		}
+	}
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2016, 2017, 2018, 2019 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.installer.test;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.fabricmc.installer.LoaderVersion;
+import net.fabricmc.installer.ServerLauncher;
+import net.fabricmc.installer.util.HttpTransport;
+import net.fabricmc.installer.util.LauncherMeta;
+import net.fabricmc.installer.util.Reference;
+import net.fabricmc.installer.util.Utils;
+
+public class ServerLauncherTests {
+	private static final String MAIN_CLASS = "net.fabricmc.loader.impl.launch.server.FabricServerLauncher";
+
+	private Path dir;
+	private Path stateFile;
+	private Path launcherJar;
+	private Path serverJar;
+	private Path launchJar;
+
+	@Before
+	public void setup() throws IOException {
+		dir = Files.createTempDirectory("fabric-installer-test");
+		stateFile = dir.resolve("launch-state.properties");
+		launcherJar = Files.write(dir.resolve("fabric-server-launch.jar"), new byte[]{1, 2});
+		serverJar = Files.write(dir.resolve("1.8.9-server.jar"), new byte[]{3, 4, 5});
+		launchJar = Files.write(dir.resolve("fabric-loader-server-0.14.0-minecraft-1.8.9.jar"), new byte[]{6});
+
+		ServerLauncher.writeLaunchState(stateFile, launcherJar, new ServerLauncher.LaunchData(serverJar, launchJar, MAIN_CLASS));
+	}
+
+	@After
+	public void cleanup() throws IOException {
+		Utils.deleteDirectory(dir);
+	}
+
+	@Test
+	public void testUnchangedLaunchStateIsUsed() {
+		ServerLauncher.LaunchData launchData = ServerLauncher.readLaunchState(stateFile, launcherJar);
+
+		Assert.assertNotNull(launchData);
+		Assert.assertEquals(serverJar, launchData.serverJar);
+		Assert.assertEquals(launchJar, launchData.launchJar);
+		Assert.assertEquals(MAIN_CLASS, launchData.mainClass);
+		// Read again, nothing was changed by reading it
+		Assert.assertNotNull(ServerLauncher.readLaunchState(stateFile, launcherJar));
+	}
+
+	@Test
+	public void testChangedLauncherJar() throws IOException {
+		touch(launcherJar);
+		Assert.assertNull(ServerLauncher.readLaunchState(stateFile, launcherJar));
+	}
+
+	@Test
+	public void testDifferentLauncherJar() throws IOException {
+		Path otherLauncherJar = Files.copy(launcherJar, dir.resolve("other-launch.jar"));
+		Files.setLastModifiedTime(otherLauncherJar, Files.getLastModifiedTime(launcherJar));
+		Assert.assertNull(ServerLauncher.readLaunchState(stateFile, otherLauncherJar));
+	}
+
+	@Test
+	public void testChangedServerJar() throws IOException {
+		grow(serverJar);
+		Assert.assertNull(ServerLauncher.readLaunchState(stateFile, launcherJar));
+	}
+
+	@Test
+	public void testChangedLaunchJar() throws IOException {
+		touch(launchJar);
+		Assert.assertNull(ServerLauncher.readLaunchState(stateFile, launcherJar));
+	}
+
+	@Test
+	public void testMissingFiles() throws IOException {
+		Files.delete(launchJar);
+		Assert.assertNull(ServerLauncher.readLaunchState(stateFile, launcherJar));
+
+		Files.delete(stateFile);
+		Assert.assertNull(ServerLauncher.readLaunchState(stateFile, launcherJar));
+	}
+
+	@Test
+	public void testFailedServerJarDownloadStopsTheInstall() throws IOException, InterruptedException {
+		Path previousCacheDir = Utils.cacheDir;
+		Utils.cacheDir = dir.resolve("cache");
+		CountDownLatch installStarted = new CountDownLatch(1);
+		CountDownLatch installInterrupted = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+
+		StubHttpTransport transport = new StubHttpTransport();
+		transport.add(Reference.minecraftLauncherManifest, "{\"versions\": [{\"id\": \"1.8.9\", \"url\": \"https://example.invalid/1.8.9.json\"}]}".getBytes(StandardCharsets.UTF_8));
+		transport.add(Reference.experimentalVersionsManifest, "{\"versions\": []}".getBytes(StandardCharsets.UTF_8));
+		transport.add("https://example.invalid/1.8.9.json", "{\"id\": \"1.8.9\", \"downloads\": {\"server\": {\"url\": \"https://example.invalid/server.jar\", \"sha1\": \"abc\", \"size\": 3}}}".getBytes(StandardCharsets.UTF_8));
+		transport.fail("https://example.invalid/server.jar", 500);
+
+		HttpTransport.set(new HttpTransport() {
+			@Override
+			public Response get(URL url, Map<String, String> headers) throws IOException {
+				try {
+					if (url.getPath().endsWith("fabric-loader-0.14.0.json")) {
+						// The install never gets past the loader json unless it is interrupted
+						installStarted.countDown();
+						release.await();
+					} else if (url.getPath().endsWith("server.jar")) {
+						installStarted.await();
+					}
+				} catch (InterruptedException e) {
+					installInterrupted.countDown();
+					throw new IOException(e);
+				}
+
+				return transport.get(url, headers);
+			}
+		});
+
+		try {
+			LauncherMeta.refresh();
+			Path dataDir = dir.resolve("data");
+
+			IOException e = Assert.assertThrows(IOException.class, () -> ServerLauncher.install(new Properties(), dir, dataDir, new LoaderVersion("0.14.0"), "1.8.9", dataDir.resolve("1.8.9-server.jar"), dataDir.resolve("launch.jar")));
+			Assert.assertTrue(e.getMessage(), e.getMessage().contains("500"));
+			Assert.assertTrue(installInterrupted.await(10, TimeUnit.SECONDS));
+		} finally {
+			release.countDown();
+			HttpTransport.set(null);
+			Utils.cacheDir = previousCacheDir;
+		}
+	}
+
+	// Same size, only the modification time differs
+	private static void touch(Path path) throws IOException {
+		Files.setLastModifiedTime(path, FileTime.fromMillis(Files.getLastModifiedTime(path).toMillis() + 2000));
+	}
+
+	// Same modification time, only the size differs
+	private static void grow(Path path) throws IOException {
+		FileTime mtime = Files.getLastModifiedTime(path);
+		Files.write(path, new byte[]{0}, StandardOpenOption.APPEND);
+		Files.setLastModifiedTime(path, mtime);
+	}
+}
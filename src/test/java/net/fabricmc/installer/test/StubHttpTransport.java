@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2016, 2017, 2018, 2019 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.installer.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import net.fabricmc.installer.util.HttpTransport;
+
+/**
+ * In memory transport serving registered bodies, supports ranges and ETag revalidation.
+ */
+public class StubHttpTransport extends HttpTransport {
+	private static final Pattern RANGE_PATTERN = Pattern.compile("bytes=(\\d+)-");
+
+	private final Map<String, byte[]> files = new HashMap<>();
+	private final Map<String, String> etags = new HashMap<>();
+	private final Map<String, Integer> failures = new HashMap<>();
+	public final List<Request> requests = new ArrayList<>();
+	public int truncateNextResponses;
+	public boolean supportsRanges = true;
+
+	public StubHttpTransport add(String url, byte[] body) {
+		failures.remove(url);
+		files.put(url, body);
+		return this;
+	}
+
+	public StubHttpTransport add(String url, byte[] body, String etag) {
+		etags.put(url, etag);
+		return add(url, body);
+	}
+
+	// Answers with the status code and no body until the url is added again
+	public StubHttpTransport fail(String url, int statusCode) {
+		failures.put(url, statusCode);
+		return this;
+	}
+
+	@Override
+	public synchronized Response get(URL url, Map<String, String> headers) throws IOException {
+		requests.add(new Request(url.toString(), new HashMap<>(headers)));
+		byte[] body = files.get(url.toString());
+		Integer failure = failures.get(url.toString());
+
+		if (failure != null) {
+			return new StubResponse(url, failure, new HashMap<>(), new byte[0], 0);
+		} else if (body == null) {
+			return new StubResponse(url, 404, new HashMap<>(), new byte[0], -1);
+		}
+
+		Map<String, String> responseHeaders = new HashMap<>();
+		String etag = etags.get(url.toString());
+
+		if (etag != null) {
+			responseHeaders.put("ETag", etag);
+
+			if (etag.equals(headers.get("If-None-Match"))) {
+				return new StubResponse(url, 304, responseHeaders, new byte[0], 0);
+			}
+		}
+
+		int status = 200;
+		int start = 0;
+		Matcher matcher = RANGE_PATTERN.matcher(headers.getOrDefault("Range", ""));
+
+		if (supportsRanges && matcher.matches()) {
+			start = Integer.parseInt(matcher.group(1));
+
+			if (start >= body.length) {
+				return new StubResponse(url, 416, responseHeaders, new byte[0], 0);
+			}
+
+			status = 206;
+			responseHeaders.put("Content-Range", String.format("bytes %d-%d/%d", start, body.length - 1, body.length));
+		}
+
+		byte[] content = Arrays.copyOfRange(body, start, body.length);
+		long contentLength = content.length;
+
+		if (truncateNextResponses > 0) {
+			truncateNextResponses--;
+			content = Arrays.copyOf(content, content.length / 2);
+		}
+
+		return new StubResponse(url, status, responseHeaders, content, contentLength);
+	}
+
+	public static final class Request {
+		public final String url;
+		public final Map<String, String> headers;
+
+		Request(String url, Map<String, String> headers) {
+			this.url = url;
+			this.headers = headers;
+		}
+	}
+
+	private static final class StubResponse extends Response {
+		private final int status;
+		private final Map<String, String> headers;
+		private final byte[] body;
+		private final long contentLength;
+
+		StubResponse(URL url, int status, Map<String, String> headers, byte[] body, long contentLength) {
+			super(url);
+			this.status = status;
+			this.headers = headers;
+			this.body = body;
+			this.contentLength = contentLength;
+		}
+
+		@Override
+		public int getStatusCode() {
+			return status;
+		}
+
+		@Override
+		public String getHeader(String name) {
+			return headers.get(name);
+		}
+
+		@Override
+		public long getContentLength() {
+			return contentLength;
+		}
+
+		@Override
+		public InputStream getBody() {
+			return new ByteArrayInputStream(body);
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2016, 2017, 2018, 2019 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.installer.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.fabricmc.installer.util.Utils;
+import net.fabricmc.installer.util.ZipSource;
+import net.fabricmc.installer.util.ZipWriter;
+
+public class ZipTests {
+	private final byte[] classData = new byte[50_000];
+	private Path dir;
+
+	@Before
+	public void setup() throws IOException {
+		// Compressible but not trivially
+		Random random = new Random(42);
+
+		for (int i = 0; i < classData.length; i++) {
+			classData[i] = (byte) random.nextInt(16);
+		}
+
+		dir = Files.createTempDirectory("fabric-installer-test");
+	}
+
+	@After
+	public void cleanup() throws IOException {
+		Utils.deleteDirectory(dir);
+	}
+
+	@Test
+	public void testRawCopy() throws IOException {
+		Path library = dir.resolve("library.jar");
+
+		// Written with data descriptors, sizes are only known from the central directory
+		try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(library))) {
+			zos.putNextEntry(new ZipEntry("a/"));
+			zos.putNextEntry(new ZipEntry("a/Deflated.class"));
+			zos.write(classData);
+
+			ZipEntry stored = new ZipEntry("a/stored.txt");
+			byte[] text = "stored".getBytes(StandardCharsets.UTF_8);
+			stored.setMethod(ZipEntry.STORED);
+			stored.setSize(text.length);
+			stored.setCrc(crc(text));
+			zos.putNextEntry(stored);
+			zos.write(text);
+		}
+
+		Path output = dir.resolve("output.jar");
+
+		try (ZipSource source = ZipSource.open(library); OutputStream os = Files.newOutputStream(output); ZipWriter writer = new ZipWriter(os)) {
+			Assert.assertEquals(3, source.getEntries().size());
+
+			try (InputStream is = source.getInputStream(source.getEntries().get(1))) {
+				Assert.assertArrayEquals(classData, readAll(is));
+			}
+
+			for (ZipSource.Entry entry : source.getEntries()) {
+				if (!entry.isDirectory()) writer.copy(entry, source.readRaw(entry));
+			}
+
+			writer.write("new.txt", "new".getBytes(StandardCharsets.UTF_8));
+		}
+
+		try (ZipFile zipFile = new ZipFile(output.toFile())) {
+			Assert.assertEquals(3, zipFile.size());
+			Assert.assertArrayEquals(classData, readAll(zipFile.getInputStream(zipFile.getEntry("a/Deflated.class"))));
+			Assert.assertEquals(ZipEntry.DEFLATED, zipFile.getEntry("a/Deflated.class").getMethod());
+			Assert.assertEquals("stored", new String(readAll(zipFile.getInputStream(zipFile.getEntry("a/stored.txt"))), StandardCharsets.UTF_8));
+			Assert.assertEquals("new", new String(readAll(zipFile.getInputStream(zipFile.getEntry("new.txt"))), StandardCharsets.UTF_8));
+		}
+	}
+
+	private static long crc(byte[] data) {
+		CRC32 crc = new CRC32();
+		crc.update(data, 0, data.length);
+		return crc.getValue();
+	}
+
+	private static byte[] readAll(InputStream is) throws IOException {
+		try (InputStream in = is) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int len;
+
+			while ((len = in.read(buffer)) >= 0) {
+				out.write(buffer, 0, len);
+			}
+
+			return out.toByteArray();
+		}
+	}
+}